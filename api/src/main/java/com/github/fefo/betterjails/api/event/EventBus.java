@@ -38,7 +38,8 @@ import java.util.function.Consumer;
 public interface EventBus {
 
   /**
-   * Registers an event handler for events of that type and subtypes under the provided plugin.
+   * Registers an event handler for events of that type and subtypes under the provided plugin,
+   * events are delivered {@link EventDelivery#SYNC synchronously}.
    * <p>
    * The plugin instance is used for the purpose of unsubscribing events registered by that plugin
    * when disabled.
@@ -55,7 +56,27 @@ public interface EventBus {
    * @return an {@link EventSubscription} with information such as the subscribing plugin,
    * the event type, the subscription activation state and more
    */
-  <T extends BetterJailsEvent> @NotNull EventSubscription<T> subscribe(@NotNull Plugin plugin, @NotNull Class<T> eventType, @NotNull Consumer<? super T> handler);
+  default <T extends BetterJailsEvent> @NotNull EventSubscription<T> subscribe(@NotNull Plugin plugin, @NotNull Class<T> eventType, @NotNull Consumer<? super T> handler) {
+    return subscribe(plugin, eventType, EventDelivery.SYNC, handler);
+  }
+
+  /**
+   * Registers an event handler for events of that type and subtypes under the provided plugin,
+   * choosing how events are delivered to it.
+   * <p>
+   * Events waiting to be delivered to a subscription that is no longer active are discarded.
+   * </p>
+   *
+   * @param plugin    the plugin subscribing to this event
+   * @param eventType the interface or subinterface of the events to listen to
+   * @param delivery  how and on which thread events are delivered to the handler
+   * @param handler   the consumer that handles the event
+   * @param <T>       the type of the events to listen to
+   * @return an {@link EventSubscription} with information such as the subscribing plugin,
+   * the event type, the subscription activation state and more
+   * @see #subscribe(Plugin, Class, Consumer)
+   */
+  <T extends BetterJailsEvent> @NotNull EventSubscription<T> subscribe(@NotNull Plugin plugin, @NotNull Class<T> eventType, @NotNull EventDelivery delivery, @NotNull Consumer<? super T> handler);
 
   /**
    * Removes the subscription from the subscriptions map and calls
@@ -0,0 +1,62 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package com.github.fefo.betterjails.api.event;
+
+/**
+ * How events are delivered to the handler of an {@link EventSubscription}.
+ * <p>
+ * Events are posted from whichever thread performed the action, which is usually the server
+ * main thread. Handlers that do slow work (such as network requests) should use
+ * {@link #ASYNC} so they don't hold up the server.
+ * </p>
+ */
+public enum EventDelivery {
+
+  /**
+   * The handler runs right away on the thread that posted the event, before the action that
+   * caused it continues. This is the default.
+   */
+  SYNC,
+
+  /**
+   * The handler runs on a shared pool of BetterJails event threads, one event at a time and in
+   * the order events were posted.
+   * <p>
+   * Each subscription has a bounded queue of pending events, if the handler falls behind far
+   * enough for the queue to fill up, newer events are dropped and a warning is logged.
+   * </p>
+   */
+  ASYNC,
+
+  /**
+   * The handler runs on the server main thread on a later tick, one event at a time and in the
+   * order events were posted.
+   * <p>
+   * Each subscription has a bounded queue of pending events, if the handler falls behind far
+   * enough for the queue to fill up, newer events are dropped and a warning is logged.
+   * </p>
+   */
+  MAIN_THREAD
+}
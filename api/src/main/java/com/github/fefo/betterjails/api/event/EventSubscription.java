@@ -58,6 +58,15 @@ public interface EventSubscription<T extends BetterJailsEvent> {
    */
   @NotNull Plugin plugin();
 
+  /**
+   * Gets how events are delivered to the handler of this subscription.
+   *
+   * @return the delivery mode of this subscription
+   */
+  default @NotNull EventDelivery delivery() {
+    return EventDelivery.SYNC;
+  }
+
   /**
    * Deactivates this subscription and replaces the handler with one that always throws.
    */
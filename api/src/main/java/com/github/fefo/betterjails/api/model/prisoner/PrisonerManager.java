@@ -33,6 +33,7 @@ import org.jetbrains.annotations.Unmodifiable;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * <b>Extreme care should be taken when handling prisoner data.</b> The backend implementation was
@@ -87,6 +88,25 @@ public interface PrisonerManager {
    */
   @NotNull Prisoner jailPlayer(@NotNull UUID uuid, @NotNull Jail jail, @NotNull Duration duration, @Nullable String reason);
 
+  /**
+   * Imprisons many players at once, as if {@link #jailPlayer(UUID, Jail, Duration, String)} was
+   * called for each of them, but with their permission groups handled concurrently and all of them
+   * persisted together, which is considerably cheaper for large amounts of players.
+   *
+   * @param uuids    the UUIDs of the players to imprison
+   * @param jail     the jail the players will be teleported to
+   * @param duration duration of the jailing time
+   * @param reason   imprisonment reason
+   * @return a future completed with the prisoners representing the players once all of them were
+   * persisted
+   */
+  @NotNull CompletableFuture<@NotNull @Unmodifiable Collection<@NotNull Prisoner>> jailPlayers(
+      @NotNull Collection<@NotNull UUID> uuids,
+      @NotNull Jail jail,
+      @NotNull Duration duration,
+      @Nullable String reason
+  );
+
   /**
    * Releases a prisoner immediately if online or schedules for releasing if offline.
    *
@@ -95,6 +115,16 @@ public interface PrisonerManager {
    */
   boolean releasePrisoner(@NotNull Prisoner prisoner);
 
+  /**
+   * Releases many prisoners at once, as if {@link #releasePrisoner(Prisoner)} was called for each
+   * of them, but with their permission groups handled concurrently and all of them persisted
+   * together. Players in the collection that aren't jailed are ignored.
+   *
+   * @param prisoners the prisoners to release
+   * @return a future completed once every prisoner was released and persisted
+   */
+  @NotNull CompletableFuture<Void> releasePrisoners(@NotNull Collection<? extends @NotNull Prisoner> prisoners);
+
   /**
    * Checks if a player by the provided unique ID is currently jailed (offline or not).
    *
@@ -106,6 +136,13 @@ public interface PrisonerManager {
   /**
    * Gets a set of currently jailed prisoners. The collection includes prisoners that are currently
    * offline and are scheduled for releasing.
+   * <p>
+   * The returned collection is an immutable snapshot, it is safe to iterate from any thread but it
+   * does not reflect changes made after it was taken.
+   * <p>
+   * Its size is known up front, but prisoners that aren't kept in memory are read back every time
+   * the collection is iterated, so iterating it costs far more than taking it. Callers that go over
+   * every prisoner more than once should keep what they need from a single pass.
    *
    * @return an unmodifiable collection of all prisoners
    */
@@ -0,0 +1,32 @@
+plugins {
+  id("buildlogic.java-conventions")
+  id("me.champeau.jmh") version "0.7.2"
+}
+
+repositories {
+  maven("https://hub.spigotmc.org/nexus/content/repositories/snapshots/")
+  maven("https://oss.sonatype.org/content/repositories/snapshots/")
+  maven("https://jitpack.io")
+
+  // mockbukkit implements paper-api
+  maven("https://repo.papermc.io/repository/maven-public/")
+}
+
+dependencies {
+  jmh(project(":betterjails"))
+  jmh(project(":betterjails-api"))
+  jmh(libs.mockbukkit)
+}
+
+jmh {
+  jmhVersion = "1.37"
+  resultFormat = "JSON"
+}
+
+tasks {
+  named<JavaCompile>("compileJmhJava") {
+    options.release = 17
+  }
+}
+
+description = "betterjails-benchmarks"
@@ -0,0 +1,109 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.benchmarks;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import com.github.fefo.betterjails.api.model.jail.Jail;
+import com.github.fefo.betterjails.api.util.ImmutableLocation;
+import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.SentenceExpiry;
+import org.bukkit.World;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * A mocked server with BetterJails enabled and a single jail, shared by all benchmarks.
+ */
+final class BenchmarkEnvironment {
+
+  static final String JAIL_NAME = "benchmark";
+
+  static BenchmarkEnvironment start() throws IOException {
+    final ServerMock server = MockBukkit.mock();
+    final World world = server.addSimpleWorld("world");
+    final BetterJailsPlugin plugin;
+    try (final InputStream pluginDescriptorStream = BetterJailsPlugin.class.getResourceAsStream("/plugin.yml")) {
+      plugin = MockBukkit.loadWith(BetterJailsPlugin.class, Objects.requireNonNull(pluginDescriptorStream, "descriptor stream"), "do not enable bstats");
+    }
+
+    server.getScheduler().performOneTick();
+    if (!plugin.prisonerData().awaitLoaded(Duration.ofSeconds(30L))) {
+      throw new IllegalStateException("prisoner data did not load");
+    }
+
+    plugin.jailData().addJail(JAIL_NAME, ImmutableLocation.at(world, 0.0, 64.0, 0.0)).join();
+    return new BenchmarkEnvironment(server, plugin, plugin.jailData().getJail(JAIL_NAME));
+  }
+
+  final ServerMock server;
+  final BetterJailsPlugin plugin;
+  final Jail jail;
+
+  private BenchmarkEnvironment(final ServerMock server, final BetterJailsPlugin plugin, final Jail jail) {
+    this.server = server;
+    this.plugin = plugin;
+    this.jail = jail;
+  }
+
+  /**
+   * Creates prisoners in the benchmark jail with a day left, either with their time running or paused.
+   */
+  List<ApiPrisoner> createPrisoners(final int count, final boolean timeRunning) {
+    final List<ApiPrisoner> prisoners = new ArrayList<>(count);
+    final Duration sentence = Duration.ofDays(1L);
+    final Instant now = Instant.now();
+    for (int i = 0; i < count; ++i) {
+      prisoners.add(new ApiPrisoner(
+          UUID.randomUUID(),
+          "prisoner" + i,
+          "default",
+          Collections.singletonList("default"),
+          this.jail,
+          "benchmark",
+          timeRunning ? SentenceExpiry.of(now.plus(sentence)) : SentenceExpiry.of(sentence),
+          sentence,
+          "benchmark",
+          this.jail.location(),
+          false
+      ));
+    }
+
+    return prisoners;
+  }
+
+  void stop() {
+    MockBukkit.unmock();
+  }
+}
@@ -0,0 +1,168 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.benchmarks;
+
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import io.github.emilyydev.betterjails.interfaces.storage.BinaryCodec;
+import io.github.emilyydev.betterjails.interfaces.storage.BukkitConfigurationStorage;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding and decoding prisoners as YAML documents and with {@link BinaryCodec}, one at a time and as a
+ * single binary block. The encoding benchmarks report encoded sizes through {@link EncodedSize}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrisonerCodecBenchmark {
+
+  @Param({"100", "10000"})
+  public int prisonerCount;
+
+  private BenchmarkEnvironment environment;
+  private BukkitConfigurationStorage yamlStorage;
+  private List<ApiPrisoner> prisoners;
+  private String[] yamlRecords;
+  private int[] yamlSizes;
+  private byte[][] binaryRecords;
+  private byte[] binaryBlock;
+  private int next = 0;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    this.environment = BenchmarkEnvironment.start();
+    this.yamlStorage = new BukkitConfigurationStorage(this.environment.plugin);
+    this.prisoners = this.environment.createPrisoners(this.prisonerCount, false);
+
+    this.yamlRecords = new String[this.prisonerCount];
+    this.yamlSizes = new int[this.prisonerCount];
+    this.binaryRecords = new byte[this.prisonerCount][];
+    for (int i = 0; i < this.prisonerCount; ++i) {
+      final ApiPrisoner prisoner = this.prisoners.get(i);
+      this.yamlRecords[i] = BukkitConfigurationStorage.encodePrisoner(prisoner);
+      this.yamlSizes[i] = this.yamlRecords[i].getBytes(StandardCharsets.UTF_8).length;
+      this.binaryRecords[i] = BinaryCodec.encodePrisoner(prisoner);
+    }
+
+    this.binaryBlock = BinaryCodec.encodePrisoners(this.prisoners);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    this.environment.stop();
+  }
+
+  private int nextIndex() {
+    final int index = this.next;
+    this.next = (index + 1) % this.prisonerCount;
+    return index;
+  }
+
+  @Benchmark
+  public String encodeYaml(final EncodedSize size) {
+    final int index = nextIndex();
+    // the size was measured during setup, so converting to UTF-8 isn't part of the measurement
+    size.count(1, this.yamlSizes[index]);
+    return BukkitConfigurationStorage.encodePrisoner(this.prisoners.get(index));
+  }
+
+  @Benchmark
+  public byte[] encodeBinary(final EncodedSize size) {
+    final byte[] bytes = BinaryCodec.encodePrisoner(this.prisoners.get(nextIndex()));
+    size.count(1, bytes.length);
+    return bytes;
+  }
+
+  @Benchmark
+  public ApiPrisoner decodeYaml() throws IOException {
+    final int index = nextIndex();
+    return this.yamlStorage.decodePrisoner(this.prisoners.get(index).uuid(), this.yamlRecords[index]);
+  }
+
+  @Benchmark
+  public Map<UUID, ApiPrisoner> decodeBinary() throws IOException {
+    return BinaryCodec.decodePrisoners(this.binaryRecords[nextIndex()], this.environment.plugin);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public byte[] encodeBinaryBlock(final EncodedSize size) {
+    final byte[] bytes = BinaryCodec.encodePrisoners(this.prisoners);
+    size.count(this.prisonerCount, bytes.length);
+    return bytes;
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public Map<UUID, ApiPrisoner> decodeBinaryBlock() throws IOException {
+    return BinaryCodec.decodePrisoners(this.binaryBlock, this.environment.plugin);
+  }
+
+  /**
+   * Counts the prisoners encoded and the bytes they took. JMH sums both over the iterations, the encoded size per
+   * prisoner is {@code encodedBytes / encodedPrisoners}.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class EncodedSize {
+
+    public long encodedPrisoners;
+    public long encodedBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      this.encodedPrisoners = 0L;
+      this.encodedBytes = 0L;
+    }
+
+    void count(final int prisoners, final int bytes) {
+      this.encodedPrisoners += prisoners;
+      this.encodedBytes += bytes;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.benchmarks;
+
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import io.github.emilyydev.betterjails.interfaces.storage.BukkitConfigurationStorage;
+import io.github.emilyydev.betterjails.interfaces.storage.MappedStorage;
+import io.github.emilyydev.betterjails.interfaces.storage.StorageInterface;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StorageBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  public int prisonerCount;
+
+  @Param({"yaml", "mapped"})
+  public String storageType;
+
+  private BenchmarkEnvironment environment;
+  private StorageInterface storage;
+  private List<ApiPrisoner> prisoners;
+  private int next = 0;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    this.environment = BenchmarkEnvironment.start();
+    this.storage = "mapped".equals(this.storageType)
+        ? new MappedStorage(this.environment.plugin)
+        : new BukkitConfigurationStorage(this.environment.plugin);
+    // storage is always loaded before it's written to, like the plugin does
+    this.storage.loadPrisoners();
+    this.prisoners = this.environment.createPrisoners(this.prisonerCount, false);
+
+    final Map<UUID, ApiPrisoner> prisonerMap = new HashMap<>(this.prisoners.size());
+    for (final ApiPrisoner prisoner : this.prisoners) {
+      prisonerMap.put(prisoner.uuid(), prisoner);
+    }
+
+    this.storage.savePrisoners(prisonerMap);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    this.storage.close();
+    this.environment.stop();
+  }
+
+  @Benchmark
+  public void savePrisoner() throws Exception {
+    this.storage.savePrisoner(this.prisoners.get(this.next));
+    this.next = (this.next + 1) % this.prisoners.size();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public Map<UUID, ApiPrisoner> loadPrisoners() throws Exception {
+    return this.storage.loadPrisoners();
+  }
+}
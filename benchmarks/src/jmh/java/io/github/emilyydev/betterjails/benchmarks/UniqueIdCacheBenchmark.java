@@ -0,0 +1,92 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.benchmarks;
+
+import io.github.emilyydev.betterjails.listeners.UniqueIdCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UniqueIdCacheBenchmark {
+
+  @Param({"1000", "10000"})
+  public int playerCount;
+
+  private BenchmarkEnvironment environment;
+  private UniqueIdCache cache;
+  private String[] names;
+  private int next = 0;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    this.environment = BenchmarkEnvironment.start();
+    this.cache = new UniqueIdCache();
+    this.cache.register(this.environment.plugin);
+
+    this.names = new String[this.playerCount];
+    for (int i = 0; i < this.playerCount; ++i) {
+      this.environment.server.addPlayer("Player" + i);
+      // lookups are case-insensitive, make them pay for it
+      this.names[i] = "pLAYER" + i;
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    this.environment.stop();
+  }
+
+  @Benchmark
+  public UUID findUniqueIdHit() {
+    final UUID uuid = this.cache.findUniqueId(this.names[this.next]);
+    this.next = (this.next + 1) % this.names.length;
+    return uuid;
+  }
+
+  @Benchmark
+  public UUID findUniqueIdMiss() {
+    return this.cache.findUniqueId("NotAPlayer");
+  }
+}
@@ -33,15 +33,17 @@ import io.github.emilyydev.betterjails.api.impl.model.jail.ApiJailManager;
 import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisonerManager;
 import io.github.emilyydev.betterjails.commands.CommandError;
 import io.github.emilyydev.betterjails.commands.CommandHandler;
+import io.github.emilyydev.betterjails.commands.SubCommandDispatcher;
 import io.github.emilyydev.betterjails.config.BetterJailsConfiguration;
 import io.github.emilyydev.betterjails.config.SubCommandsConfiguration;
 import io.github.emilyydev.betterjails.data.JailDataHandler;
 import io.github.emilyydev.betterjails.data.PrisonerDataHandler;
 import io.github.emilyydev.betterjails.interfaces.permission.PermissionInterface;
-import io.github.emilyydev.betterjails.interfaces.storage.BukkitConfigurationStorage;
 import io.github.emilyydev.betterjails.interfaces.storage.StorageAccess;
+import io.github.emilyydev.betterjails.interfaces.storage.StorageInterface;
 import io.github.emilyydev.betterjails.listeners.PlayerListeners;
 import io.github.emilyydev.betterjails.listeners.PluginDisableListener;
+import io.github.emilyydev.betterjails.listeners.WorldListener;
 import io.github.emilyydev.betterjails.listeners.UniqueIdCache;
 import io.github.emilyydev.betterjails.util.Util;
 import net.ess3.api.IEssentials;
@@ -98,10 +100,11 @@ public class BetterJailsPlugin extends JavaPlugin implements Executor {
   private final Path pluginDir = getDataFolder().toPath();
   private final BetterJailsConfiguration configuration = new BetterJailsConfiguration(this.pluginDir);
   private final SubCommandsConfiguration subCommands = new SubCommandsConfiguration(this.pluginDir);
-  private final StorageAccess storageAccess = new StorageAccess(new BukkitConfigurationStorage(this));
+  private final SubCommandDispatcher subCommandDispatcher = new SubCommandDispatcher(this);
+  private final StorageAccess storageAccess = new StorageAccess(() -> StorageInterface.determineStorageInterface(this));
   private final PrisonerDataHandler prisonerData = new PrisonerDataHandler(this);
   private final JailDataHandler jailData = new JailDataHandler(this);
-  private final BetterJailsApi api = new BetterJailsApi(new ApiJailManager(this.jailData), new ApiPrisonerManager(this));
+  private final BetterJailsApi api = new BetterJailsApi(this, new ApiJailManager(this.jailData), new ApiPrisonerManager(this));
   private final ApiEventBus eventBus = this.api.getEventBus();
   private final UniqueIdCache uniqueIdCache = new UniqueIdCache();
   private final boolean isTesting;
@@ -122,6 +125,10 @@ public class BetterJailsPlugin extends JavaPlugin implements Executor {
     return this.uniqueIdCache.findUniqueId(name);
   }
 
+  public UniqueIdCache uniqueIdCache() {
+    return this.uniqueIdCache;
+  }
+
   public PrisonerDataHandler prisonerData() {
     return this.prisonerData;
   }
@@ -159,6 +166,10 @@ public class BetterJailsPlugin extends JavaPlugin implements Executor {
     return this.subCommands;
   }
 
+  public SubCommandDispatcher subCommandDispatcher() {
+    return this.subCommandDispatcher;
+  }
+
   public Path getPluginDir() {
     return this.pluginDir;
   }
@@ -191,6 +202,7 @@ public class BetterJailsPlugin extends JavaPlugin implements Executor {
     }
 
     PluginDisableListener.create(this.eventBus).register(this);
+    WorldListener.create().register(this);
     this.uniqueIdCache.register(this);
 
     final Server server = getServer();
@@ -224,11 +236,19 @@ public class BetterJailsPlugin extends JavaPlugin implements Executor {
       try {
         // Jails must be loaded first, loading prisoners depends on jails already being loaded
         this.jailData.load();
-        this.prisonerData.load();
       } catch (final IOException | RuntimeException ex) {
         LOGGER.error("Error loading plugin data, the plugin will disable", ex);
         pluginManager.disablePlugin(this);
+        return;
       }
+
+      // prisoners load in the background, logins wait for them in PlayerListeners
+      this.prisonerData.loadAsync().whenCompleteAsync((v, ex) -> {
+        if (ex != null) {
+          LOGGER.error("Error loading plugin data, the plugin will disable", ex);
+          pluginManager.disablePlugin(this);
+        }
+      }, this);
     });
 
     PlayerListeners.create(this).register();
@@ -239,6 +259,8 @@ public class BetterJailsPlugin extends JavaPlugin implements Executor {
     }
 
     scheduler.runTaskTimer(this, this.prisonerData::timer, 0L, 20L);
+    scheduler.runTaskTimer(this, this.jailData::updateChunkTickets, 20L, 20L);
+    scheduler.runTaskTimer(this, this.subCommandDispatcher::tick, 1L, 1L);
 
     final Duration autoSavePeriod = this.configuration.autoSavePeriod();
     if (!autoSavePeriod.isZero()) {
@@ -258,6 +280,8 @@ public class BetterJailsPlugin extends JavaPlugin implements Executor {
       return;
     }
 
+    this.subCommandDispatcher.flush();
+
     try {
       this.prisonerData.save().get();
     } catch (final InterruptedException | ExecutionException ex) {
@@ -293,14 +317,14 @@ public class BetterJailsPlugin extends JavaPlugin implements Executor {
     }, this);
   }
 
-  public void reload() throws IOException, InvalidConfigurationException {
+  /**
+   * Reloads the configuration right away and plugin data in the background, the returned future completes on the main
+   * thread once the reloaded data is in place.
+   */
+  public CompletableFuture<Void> reload() throws IOException, InvalidConfigurationException {
     this.configuration.loadWithDefaults();
     this.subCommands.load();
 
-    // Jails must be loaded first, loading prisoners depends on jails already being loaded
-    this.jailData.load();
-    this.prisonerData.load();
-
     if (this.configuration.permissionHookEnabled()) {
       this.configuration.prisonerPermissionGroup().ifPresent(prisonerGroup ->
           this.resetPermissionInterface(PermissionInterface.determinePermissionInterface(this, prisonerGroup))
@@ -308,6 +332,9 @@ public class BetterJailsPlugin extends JavaPlugin implements Executor {
     } else {
       this.resetPermissionInterface(PermissionInterface.NULL);
     }
+
+    // Jails must be loaded first, loading prisoners depends on jails already being loaded
+    return this.jailData.reload().thenCompose(v -> this.prisonerData.reload());
   }
 
   // TODO keep this or perform some kind of automatic migration?
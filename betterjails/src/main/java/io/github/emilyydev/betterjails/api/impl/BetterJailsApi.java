@@ -28,6 +28,7 @@ import com.github.fefo.betterjails.api.BetterJails;
 import com.github.fefo.betterjails.api.model.jail.JailManager;
 import com.github.fefo.betterjails.api.model.prisoner.PrisonerManager;
 import io.github.emilyydev.betterjails.api.impl.event.ApiEventBus;
+import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
 public final class BetterJailsApi implements BetterJails {
@@ -36,10 +37,10 @@ public final class BetterJailsApi implements BetterJails {
   private final PrisonerManager prisonerManager;
   private final ApiEventBus eventBus;
 
-  public BetterJailsApi(final JailManager jailManager, final PrisonerManager prisonerManager) {
+  public BetterJailsApi(final Plugin plugin, final JailManager jailManager, final PrisonerManager prisonerManager) {
     this.jailManager = jailManager;
     this.prisonerManager = prisonerManager;
-    this.eventBus = new ApiEventBus(this);
+    this.eventBus = new ApiEventBus(this, plugin);
   }
 
   @Override
@@ -26,6 +26,7 @@ package io.github.emilyydev.betterjails.api.impl.event;
 
 import com.github.fefo.betterjails.api.BetterJails;
 import com.github.fefo.betterjails.api.event.BetterJailsEvent;
+import com.github.fefo.betterjails.api.event.EventDelivery;
 import com.github.fefo.betterjails.api.event.EventBus;
 import com.github.fefo.betterjails.api.event.EventSubscription;
 import com.github.fefo.betterjails.api.event.jail.JailCreateEvent;
@@ -54,10 +55,15 @@ import org.jetbrains.annotations.Unmodifiable;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import static java.lang.invoke.MethodType.methodType;
@@ -92,23 +98,61 @@ public final class ApiEventBus implements EventBus {
     );
   }
 
+  private static final ApiEventSubscription<?>[] NO_SUBSCRIPTIONS = {};
+  private static final int ASYNC_DELIVERY_THREADS = 2;
+
   private final BetterJails api;
+  private final Plugin plugin;
+  // each async subscription has at most one task queued here at a time, the events themselves wait in its EventQueue
+  private final ThreadPoolExecutor asyncDeliveryExecutor = new ThreadPoolExecutor(
+      ASYNC_DELIVERY_THREADS, ASYNC_DELIVERY_THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+        final Thread t = new Thread(task, "BetterJails Event Thread");
+        t.setDaemon(true);
+        return t;
+      }
+  );
+  private final Executor mainThreadExecutor;
+  // guarded by itself, every change to it has to be followed by refreshDispatchers()
   private final ListMultimap<Class<? extends BetterJailsEvent>, EventSubscription<? extends BetterJailsEvent>>
       subscriptions = ArrayListMultimap.create();
+  private final Map<Class<? extends BetterJailsEvent>, Dispatcher> dispatchers;
+
+  public ApiEventBus(final BetterJails api, final Plugin plugin) {
+    this.api = Objects.requireNonNull(api, "api");
+    this.plugin = plugin;
+    this.mainThreadExecutor = task -> this.plugin.getServer().getScheduler().runTask(this.plugin, task);
+    this.asyncDeliveryExecutor.allowCoreThreadTimeOut(true);
 
-  public ApiEventBus(final BetterJails api) {
-    this.api = api;
+    final ImmutableMap.Builder<Class<? extends BetterJailsEvent>, Dispatcher> builder = ImmutableMap.builder();
+    KNOWN_EVENT_TYPES.forEach((type, constructor) -> builder.put(type, new Dispatcher(api, type, constructor)));
+    this.dispatchers = builder.build();
   }
 
   @Override
   public <T extends BetterJailsEvent> @NotNull EventSubscription<T> subscribe(
       final @NotNull Plugin plugin,
       final @NotNull Class<T> eventType,
+      final @NotNull EventDelivery delivery,
       final @NotNull Consumer<? super T> handler
   ) {
-    final EventSubscription<T> subscription = new ApiEventSubscription<>(plugin, eventType, handler);
+    final Executor executor;
+    switch (delivery) {
+      case ASYNC:
+        executor = this.asyncDeliveryExecutor;
+        break;
+      case MAIN_THREAD:
+        executor = this.mainThreadExecutor;
+        break;
+      case SYNC:
+      default:
+        executor = null;
+        break;
+    }
+
+    final EventSubscription<T> subscription = new ApiEventSubscription<>(plugin, eventType, delivery, executor, handler);
     synchronized (this.subscriptions) {
       this.subscriptions.get(eventType).add(subscription);
+      refreshDispatchers();
     }
 
     return subscription;
@@ -118,6 +162,7 @@ public final class ApiEventBus implements EventBus {
   public <T extends BetterJailsEvent> void unsubscribe(final @NotNull EventSubscription<T> subscription) {
     synchronized (this.subscriptions) {
       this.subscriptions.get(subscription.eventType()).remove(subscription);
+      refreshDispatchers();
     }
 
     subscription.unsubscribe();
@@ -134,6 +179,7 @@ public final class ApiEventBus implements EventBus {
           return false;
         }
       });
+      refreshDispatchers();
     }
   }
 
@@ -151,6 +197,7 @@ public final class ApiEventBus implements EventBus {
           return false;
         }
       });
+      refreshDispatchers();
     }
   }
 
@@ -158,6 +205,7 @@ public final class ApiEventBus implements EventBus {
     synchronized (this.subscriptions) {
       this.subscriptions.values().forEach(EventSubscription::unsubscribe);
       this.subscriptions.clear();
+      refreshDispatchers();
     }
   }
 
@@ -199,42 +247,76 @@ public final class ApiEventBus implements EventBus {
     }
   }
 
+  /**
+   * Creates and dispatches an event of the given type. Neither creating the event nor dispatching it locks, the
+   * subscriptions that can receive each event type are resolved up front whenever they change.
+   * Only synchronous subscriptions run on the calling thread, the rest only get the event queued.
+   */
   @SuppressWarnings("unchecked")
   public <T extends BetterJailsEvent> T post(final Class<T> type, final Object... args) {
-    Objects.requireNonNull(this.api, "api");
+    final Dispatcher dispatcher = this.dispatchers.get(type);
+    if (dispatcher == null) {
+      throw new Error("Unknown event type " + type);
+    }
 
     final T event;
     try {
-      event = type.cast(
-          KNOWN_EVENT_TYPES.get(type)
-              .bindTo(this.api)
-              .bindTo(type)
-              .invokeWithArguments(args)
-      );
+      event = type.cast((Object) dispatcher.constructor.invokeExact(args));
     } catch (final Throwable throwable) {
-      throw new Error("Unknown event type " + type, throwable);
+      throw new Error("Could not create event of type " + type, throwable);
     }
 
-    synchronized (this.subscriptions) {
-      final Iterator<Map.Entry<Class<? extends BetterJailsEvent>, EventSubscription<? extends BetterJailsEvent>>>
-          iterator = this.subscriptions.entries().iterator();
-      while (iterator.hasNext()) {
-        final Map.Entry<Class<? extends BetterJailsEvent>, EventSubscription<? extends BetterJailsEvent>> entry =
-            iterator.next();
-        final Class<? extends BetterJailsEvent> eventType = entry.getKey();
-        final EventSubscription<? extends BetterJailsEvent> subscription = entry.getValue();
-
-        if (subscription.isNotActive()) {
-          iterator.remove();
-          continue;
-        }
+    boolean foundInactive = false;
+    for (final ApiEventSubscription<?> subscription : dispatcher.subscriptions) {
+      // unsubscribing from the subscription itself doesn't go through the bus
+      if (subscription.isNotActive()) {
+        foundInactive = true;
+        continue;
+      }
 
-        if (eventType.isInstance(event)) {
-          ((EventSubscription<T>) subscription).handler().accept(event);
-        }
+      ((ApiEventSubscription<T>) subscription).deliver(event);
+    }
+
+    if (foundInactive) {
+      synchronized (this.subscriptions) {
+        this.subscriptions.values().removeIf(EventSubscription::isNotActive);
+        refreshDispatchers();
       }
     }
 
     return event;
   }
+
+  // guarded by subscriptions
+  private void refreshDispatchers() {
+    for (final Dispatcher dispatcher : this.dispatchers.values()) {
+      final List<ApiEventSubscription<?>> matching = new ArrayList<>();
+      for (final Map.Entry<Class<? extends BetterJailsEvent>, EventSubscription<? extends BetterJailsEvent>> entry :
+          this.subscriptions.entries()) {
+        if (entry.getKey().isAssignableFrom(dispatcher.eventClass)) {
+          // every subscription is created by this bus
+          matching.add((ApiEventSubscription<?>) entry.getValue());
+        }
+      }
+
+      dispatcher.subscriptions = matching.isEmpty() ? NO_SUBSCRIPTIONS : matching.toArray(NO_SUBSCRIPTIONS);
+    }
+  }
+
+  private static final class Dispatcher {
+
+    // (Object[])Object, creates the event with the given arguments
+    final MethodHandle constructor;
+    // the implementation class, subscriptions to any of its supertypes receive the event
+    final Class<?> eventClass;
+    volatile ApiEventSubscription<?>[] subscriptions = NO_SUBSCRIPTIONS;
+
+    Dispatcher(final BetterJails api, final Class<? extends BetterJailsEvent> type, final MethodHandle constructor) {
+      final MethodHandle bound = MethodHandles.insertArguments(constructor, 0, api, type);
+      this.constructor = bound
+          .asSpreader(Object[].class, bound.type().parameterCount())
+          .asType(methodType(Object.class, Object[].class));
+      this.eventClass = constructor.type().returnType();
+    }
+  }
 }
@@ -25,10 +25,13 @@
 package io.github.emilyydev.betterjails.api.impl.event;
 
 import com.github.fefo.betterjails.api.event.BetterJailsEvent;
+import com.github.fefo.betterjails.api.event.EventDelivery;
 import com.github.fefo.betterjails.api.event.EventSubscription;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 public final class ApiEventSubscription<T extends BetterJailsEvent> implements EventSubscription<T> {
@@ -37,15 +40,25 @@ public final class ApiEventSubscription<T extends BetterJailsEvent> implements E
     throw new IllegalStateException("Inactive subscription");
   };
 
-  private boolean active = true;
-  private Consumer<? super T> handler;
+  private volatile boolean active = true;
+  private volatile Consumer<? super T> handler;
   private final Plugin plugin;
   private final Class<T> eventType;
+  private final EventDelivery delivery;
+  private final @Nullable EventQueue<T> queue;
 
-  public ApiEventSubscription(final Plugin plugin, final Class<T> eventType, final Consumer<? super T> handler) {
+  public ApiEventSubscription(
+      final Plugin plugin,
+      final Class<T> eventType,
+      final EventDelivery delivery,
+      final @Nullable Executor executor,
+      final Consumer<? super T> handler
+  ) {
     this.plugin = plugin;
     this.eventType = eventType;
+    this.delivery = delivery;
     this.handler = handler;
+    this.queue = executor == null ? null : new EventQueue<>(this, executor);
   }
 
   @Override
@@ -63,6 +76,22 @@ public final class ApiEventSubscription<T extends BetterJailsEvent> implements E
     return this.plugin;
   }
 
+  @Override
+  public @NotNull EventDelivery delivery() {
+    return this.delivery;
+  }
+
+  /**
+   * Runs the handler right away for synchronous subscriptions, or queues the event for delivery otherwise.
+   */
+  void deliver(final T event) {
+    if (this.queue == null) {
+      this.handler.accept(event);
+    } else {
+      this.queue.offer(event);
+    }
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public void unsubscribe() {
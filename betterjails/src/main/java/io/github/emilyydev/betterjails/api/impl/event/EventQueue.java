@@ -0,0 +1,118 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.api.impl.event;
+
+import com.github.fefo.betterjails.api.event.BetterJailsEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded queue of events waiting to be delivered to a single subscription, drained one event at a time on the
+ * subscription's executor. When the queue is full, newer events are dropped instead of holding up the posting thread.
+ */
+final class EventQueue<T extends BetterJailsEvent> implements Runnable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("BetterJails");
+
+  private static final int CAPACITY = 1024;
+  // so a busy main thread subscription doesn't take a whole tick, the rest is delivered on the next run
+  private static final int MAX_EVENTS_PER_RUN = 64;
+
+  private final ApiEventSubscription<T> subscription;
+  private final Executor executor;
+  private final Queue<T> queue = new ArrayBlockingQueue<>(CAPACITY);
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private volatile boolean overflowing = false;
+
+  EventQueue(final ApiEventSubscription<T> subscription, final Executor executor) {
+    this.subscription = subscription;
+    this.executor = executor;
+  }
+
+  void offer(final T event) {
+    if (!this.queue.offer(event)) {
+      if (!this.overflowing) {
+        this.overflowing = true;
+        LOGGER.warn(
+            "Event queue of a {} subscription to {} from plugin {} is full, events are being dropped",
+            this.subscription.delivery(), this.subscription.eventType().getSimpleName(), this.subscription.plugin().getName()
+        );
+      }
+
+      return;
+    }
+
+    schedule();
+  }
+
+  @Override
+  public void run() {
+    try {
+      for (int i = 0; i < MAX_EVENTS_PER_RUN; ++i) {
+        final T event = this.queue.poll();
+        if (event == null) {
+          this.overflowing = false;
+          break;
+        }
+
+        if (this.subscription.isNotActive()) {
+          this.queue.clear();
+          break;
+        }
+
+        try {
+          this.subscription.handler().accept(event);
+        } catch (final Throwable throwable) {
+          LOGGER.error(
+              "Could not pass event {} to plugin {}",
+              event.getEventType().getSimpleName(), this.subscription.plugin().getName(), throwable
+          );
+        }
+      }
+    } finally {
+      this.scheduled.set(false);
+      if (!this.queue.isEmpty()) {
+        schedule();
+      }
+    }
+  }
+
+  private void schedule() {
+    if (this.scheduled.compareAndSet(false, true)) {
+      try {
+        this.executor.execute(this);
+      } catch (final RuntimeException ex) {
+        // the executor is gone (the plugin got disabled), nothing left to deliver these to
+        this.scheduled.set(false);
+        this.queue.clear();
+      }
+    }
+  }
+}
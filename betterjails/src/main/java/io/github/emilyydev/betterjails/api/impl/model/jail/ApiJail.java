@@ -27,16 +27,67 @@ package io.github.emilyydev.betterjails.api.impl.model.jail;
 
 import com.github.fefo.betterjails.api.model.jail.Jail;
 import com.github.fefo.betterjails.api.util.ImmutableLocation;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.ref.WeakReference;
 import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 
 public final class ApiJail implements Jail {
 
+  private static final LongAdder LOCATION_CACHE_HITS = new LongAdder();
+  private static final LongAdder LOCATION_CACHE_MISSES = new LongAdder();
+  // bumped whenever a world is loaded or unloaded, resolved locations from before that are not used anymore
+  private static volatile int worldsVersion = 0;
+
+  /**
+   * Resolved Bukkit location of the given jail, a new copy every time. Only looks up the world if it's not cached.
+   */
+  public static Location mutableLocationOf(final Jail jail) {
+    return jail instanceof ApiJail ? ((ApiJail) jail).mutableLocation() : jail.location().mutable();
+  }
+
+  /**
+   * Resolved Bukkit release location of the given jail, a new copy every time. Only looks up the world if it's not
+   * cached.
+   */
+  public static @Nullable Location mutableReleaseLocationOf(final Jail jail) {
+    if (jail instanceof ApiJail) {
+      return ((ApiJail) jail).mutableReleaseLocation();
+    }
+
+    final ImmutableLocation releaseLocation = jail.releaseLocation();
+    return releaseLocation == null ? null : releaseLocation.mutable();
+  }
+
+  /**
+   * Makes every resolved location be looked up again the next time it's used, they may point to a world that is gone or
+   * was replaced. Resolved locations only hold weak references to their world, so they don't keep it loaded meanwhile.
+   * Main thread only.
+   */
+  @SuppressWarnings("NonAtomicOperationOnVolatileField")
+  public static void invalidateResolvedLocations() {
+    worldsVersion++;
+  }
+
+  public static String locationCacheReport() {
+    final long hits = LOCATION_CACHE_HITS.sum();
+    final long misses = LOCATION_CACHE_MISSES.sum();
+    final long lookups = hits + misses;
+    return String.format(
+        "%,d world lookups for %,d locations (%.1f%% cached)",
+        misses, lookups, lookups == 0L ? 0.0 : hits * 100.0 / lookups
+    );
+  }
+
   private final String name;
   private volatile ImmutableLocation location;
   private volatile ImmutableLocation releaseLocation;
+  private volatile @Nullable ResolvedLocation resolvedLocation = null;
+  private volatile @Nullable ResolvedLocation resolvedReleaseLocation = null;
 
   public ApiJail(final String name, final ImmutableLocation location, final ImmutableLocation releaseLocation) {
     this.name = name;
@@ -65,6 +116,53 @@ public final class ApiJail implements Jail {
     this.releaseLocation = location;
   }
 
+  public Location mutableLocation() {
+    final ImmutableLocation location = this.location;
+    final Location resolved = resolve(location, this.resolvedLocation);
+    if (resolved != null) {
+      return resolved;
+    }
+
+    final int worldsVersion = ApiJail.worldsVersion;
+    final Location mutable = location.mutable();
+    this.resolvedLocation = new ResolvedLocation(location, mutable.getWorld(), worldsVersion);
+    return mutable;
+  }
+
+  public @Nullable Location mutableReleaseLocation() {
+    final ImmutableLocation releaseLocation = this.releaseLocation;
+    if (releaseLocation == null) {
+      return null;
+    }
+
+    final Location resolved = resolve(releaseLocation, this.resolvedReleaseLocation);
+    if (resolved != null) {
+      return resolved;
+    }
+
+    final int worldsVersion = ApiJail.worldsVersion;
+    final Location mutable = releaseLocation.mutable();
+    this.resolvedReleaseLocation = new ResolvedLocation(releaseLocation, mutable.getWorld(), worldsVersion);
+    return mutable;
+  }
+
+  /**
+   * Returns a new location made from the cached world, or {@code null} if it needs to be looked up again.
+   */
+  private static @Nullable Location resolve(final ImmutableLocation source, final @Nullable ResolvedLocation cached) {
+    // a location changed through the setters doesn't match the cached one anymore
+    final World world = cached != null && cached.source == source && cached.worldsVersion == worldsVersion
+        ? cached.world.get()
+        : null;
+    if (world == null) {
+      LOCATION_CACHE_MISSES.increment();
+      return null;
+    }
+
+    LOCATION_CACHE_HITS.increment();
+    return new Location(world, source.getX(), source.getY(), source.getZ(), source.getYaw(), source.getPitch());
+  }
+
   @Override
   public @NotNull String name() {
     return this.name;
@@ -91,4 +189,17 @@ public final class ApiJail implements Jail {
         + ", releaseLocation=" + this.releaseLocation
         + ']';
   }
+
+  private static final class ResolvedLocation {
+
+    final ImmutableLocation source;
+    final WeakReference<World> world;
+    final int worldsVersion;
+
+    ResolvedLocation(final ImmutableLocation source, final World world, final int worldsVersion) {
+      this.source = source;
+      this.world = new WeakReference<>(world);
+      this.worldsVersion = worldsVersion;
+    }
+  }
 }
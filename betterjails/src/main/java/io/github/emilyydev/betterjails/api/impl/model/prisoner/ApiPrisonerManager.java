@@ -28,6 +28,7 @@ import com.github.fefo.betterjails.api.model.jail.Jail;
 import com.github.fefo.betterjails.api.model.prisoner.Prisoner;
 import com.github.fefo.betterjails.api.model.prisoner.PrisonerManager;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import io.github.emilyydev.betterjails.BetterJailsPlugin;
 import io.github.emilyydev.betterjails.util.Util;
 import org.bukkit.OfflinePlayer;
@@ -37,9 +38,14 @@ import org.jetbrains.annotations.Unmodifiable;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public final class ApiPrisonerManager implements PrisonerManager {
 
@@ -70,6 +76,28 @@ public final class ApiPrisonerManager implements PrisonerManager {
     return getPrisoner(uuid);
   }
 
+  @Override
+  public @NotNull CompletableFuture<@NotNull @Unmodifiable Collection<@NotNull Prisoner>> jailPlayers(
+      final @NotNull Collection<@NotNull UUID> uuids,
+      final @NotNull Jail jail,
+      final @NotNull Duration duration,
+      final @Nullable String reason
+  ) {
+    Objects.requireNonNull(uuids, "uuids");
+    Objects.requireNonNull(jail, "jail");
+    Objects.requireNonNull(duration, "duration");
+    Preconditions.checkState(!duration.isNegative() && !duration.isZero(), "duration must be positive");
+
+    final Set<UUID> distinctUuids = new LinkedHashSet<>(uuids);
+    final List<OfflinePlayer> players = new ArrayList<>(distinctUuids.size());
+    for (final UUID uuid : distinctUuids) {
+      players.add(this.plugin.getServer().getOfflinePlayer(Objects.requireNonNull(uuid, "uuid")));
+    }
+
+    return this.plugin.prisonerData().addJailedPlayers(players, jail, Util.NIL_UUID, "api", duration, reason, true)
+        .thenApply(prisoners -> ImmutableList.<Prisoner>copyOf(prisoners));
+  }
+
   @Override
   public boolean releasePrisoner(final @NotNull Prisoner prisoner) {
     Objects.requireNonNull(prisoner, "prisoner");
@@ -77,6 +105,17 @@ public final class ApiPrisonerManager implements PrisonerManager {
     return this.plugin.prisonerData().releaseJailedPlayer(player, Util.NIL_UUID, "api", true);
   }
 
+  @Override
+  public @NotNull CompletableFuture<Void> releasePrisoners(final @NotNull Collection<? extends @NotNull Prisoner> prisoners) {
+    Objects.requireNonNull(prisoners, "prisoners");
+    final Set<UUID> uuids = new LinkedHashSet<>(prisoners.size());
+    for (final Prisoner prisoner : prisoners) {
+      uuids.add(Objects.requireNonNull(prisoner, "prisoner").uuid());
+    }
+
+    return this.plugin.prisonerData().releaseJailedPlayers(uuids, Util.NIL_UUID, "api", true);
+  }
+
   @Override
   public boolean isPlayerJailed(final @NotNull UUID uuid) {
     Objects.requireNonNull(uuid, "uuid");
@@ -34,6 +34,7 @@ public final class CommandError extends ParserException {
 
   public static final Caption JAIL_FAILED_PLAYER_NEVER_JOINED = Caption.of("jailFailedPlayerNeverJoined");
   public static final Caption JAIL_FAILED_PLAYER_EXEMPT = Caption.of("jailFailedPlayerExempt");
+  public static final Caption JAIL_BULK_FAILED = Caption.of("jailBulkFailed");
   public static final Caption INFO_FAILED_PLAYER_NOT_JAILED = Caption.of("infoFailedPlayerNotJailed");
   public static final Caption UNJAIL_FAILED_PLAYER_NOT_JAILED = Caption.of("unjailFailedPlayerNotJailed");
 
@@ -27,12 +27,14 @@ package io.github.emilyydev.betterjails.commands;
 
 import com.github.fefo.betterjails.api.event.plugin.PluginReloadEvent;
 import com.github.fefo.betterjails.api.model.jail.Jail;
-import com.github.fefo.betterjails.api.model.prisoner.Prisoner;
 import com.github.fefo.betterjails.api.util.ImmutableLocation;
 import com.google.common.base.MoreObjects;
 import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.api.impl.model.jail.ApiJail;
 import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
 import io.github.emilyydev.betterjails.config.BetterJailsConfiguration;
+import io.github.emilyydev.betterjails.config.SubCommandsConfiguration;
+import io.github.emilyydev.betterjails.data.PrisonerDataHandler;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.Server;
 import org.bukkit.command.CommandSender;
@@ -55,19 +57,23 @@ import java.io.IOException;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
 import java.util.StringJoiner;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
+import static io.github.emilyydev.betterjails.util.Util.NIL_UUID;
 import static io.github.emilyydev.betterjails.util.Util.color;
 import static io.github.emilyydev.betterjails.util.Util.uuidOrNil;
 
 public final class CommandHandler {
 
   private static final Logger LOGGER = LoggerFactory.getLogger("BetterJails");
+  private static final int SUGGESTION_LIMIT = 100;
 
   private static String durationString(Duration duration) {
     final StringBuilder timeLeftBuilder = new StringBuilder();
@@ -145,6 +151,69 @@ public final class CommandHandler {
     );
   }
 
+  @Permission("betterjails.jail.bulk")
+  @Command("jail bulk <jail> <time> <targets> [reason]")
+  @CommandDescription("Imprisons a comma separated list of players in the indicated jail for the given amount of time")
+  public CompletableFuture<Void> imprisonPlayers(
+      final CommandContext<CommandSender> ctx,
+      final CommandSender sender,
+      final Jail jail,
+      final Duration time,
+      final String targets,
+      @Greedy final @Nullable String reason
+  ) {
+    final String timeInput = ctx.parsingContext("time").consumedInput();
+    final String executorName = sender.getName();
+    final Set<UUID> seen = new HashSet<>();
+    final List<OfflinePlayer> players = new ArrayList<>();
+    final List<String> skipped = new ArrayList<>();
+    for (final String name : targets.split(",")) {
+      if (name.isEmpty()) {
+        continue;
+      }
+
+      final UUID uuid = this.plugin.findUniqueId(name);
+      final OfflinePlayer target = this.server.getOfflinePlayer(uuid);
+      if (uuid.equals(NIL_UUID) || (!target.hasPlayedBefore() && !target.isOnline())
+          || (target.isOnline() && target.getPlayer().hasPermission("betterjails.jail.exempt"))) {
+        skipped.add(name);
+      } else if (seen.add(uuid)) {
+        players.add(target);
+      }
+    }
+
+    if (!skipped.isEmpty()) {
+      sender.sendMessage(this.configuration.messages().jailPlayersSkipped(String.join(", ", skipped), executorName));
+    }
+
+    if (players.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return this.plugin.prisonerData().addJailedPlayers(players, jail, uuidOrNil(sender), executorName, time, reason, true).handleAsync((prisoners, ex) -> {
+      if (ex == null) {
+        final StringJoiner prisonerNames = new StringJoiner(", ");
+        for (final ApiPrisoner prisoner : prisoners) {
+          prisonerNames.add(prisoner.nameOr("(unknown)"));
+        }
+
+        this.server.broadcast(
+            this.configuration.messages().jailPlayersSuccess(prisonerNames.toString(), executorName, jail.name(), timeInput, MoreObjects.firstNonNull(reason, "no reason provided")),
+            "betterjails.receivebroadcast"
+        );
+        return null;
+      } else {
+        LOGGER.error("An error occurred jailing players", ex);
+        throw new CommandError(
+            ctx, CommandError.JAIL_BULK_FAILED,
+            CommandError.executorVariable(executorName),
+            CommandError.jailVariable(jail.name()),
+            CommandError.timeVariable(timeInput)
+        );
+      }
+    }, this.plugin);
+  }
+
   @Permission("betterjails.jail")
   @Command("jail info <prisoner>")
   @CommandDescription("Prints information about the imprisoned player")
@@ -343,18 +412,68 @@ public final class CommandHandler {
     sender.sendMessage(color("&bBetterJails &3by &bemilyy-dev &3- v%s", this.plugin.getDescription().getVersion()));
   }
 
+  @Permission("betterjails.betterjails.stats")
+  @Command("betterjails stats")
+  @CommandDescription("Prints runtime statistics of the plugin")
+  public void printStats(final CommandSender sender) {
+    sender.sendMessage(color("&bBetterJails &3statistics:"));
+    final PrisonerDataHandler prisonerData = this.plugin.prisonerData();
+    sender.sendMessage(color(
+        "  &7· Prisoners: &f%,d in memory, %,d dormant (%,d KiB encoded on the heap), %,d only in storage",
+        prisonerData.activePrisonerCount(), prisonerData.dormantPrisonerCount(),
+        prisonerData.dormantPrisonerBytes() / 1024L, prisonerData.storedPrisonerCount()
+    ));
+    sender.sendMessage(color(
+        "  &7· Unchanged prisoners skipped on save: &f%,d last save, %,d total",
+        prisonerData.lastSaveSkippedPrisoners(), prisonerData.skippedPrisonerWrites()
+    ));
+    sender.sendMessage(color("  &7· Unique ID cache: &f%s", this.plugin.uniqueIdCache().report()));
+    sender.sendMessage(color("  &7· Jail locations: &f%s", ApiJail.locationCacheReport()));
+    sender.sendMessage(color("  &7· Permissions: &f%s", this.plugin.permissionInterface().name()));
+    for (final String line : this.plugin.permissionInterface().statistics()) {
+      sender.sendMessage(color("    &7%s", line));
+    }
+    sender.sendMessage(color("  &7· Subcommands: &f%,d queued", this.plugin.subCommandDispatcher().queued()));
+    printSubCommandTimings(sender, "on-jail", this.plugin.subCommands().onJail());
+    printSubCommandTimings(sender, "on-release", this.plugin.subCommands().onRelease());
+  }
+
+  private static void printSubCommandTimings(final CommandSender sender, final String trigger, final SubCommandsConfiguration.SubCommands subCommands) {
+    for (final SubCommandsConfiguration.SubCommand command : subCommands.asPrisoner()) {
+      if (command.executions() != 0L) {
+        sender.sendMessage(color("    &7%s as prisoner &f/%s&7: &f%s", trigger, command.source(), command.timingReport()));
+      }
+    }
+
+    for (final SubCommandsConfiguration.SubCommand command : subCommands.asConsole()) {
+      if (command.executions() != 0L) {
+        sender.sendMessage(color("    &7%s as console &f/%s&7: &f%s", trigger, command.source(), command.timingReport()));
+      }
+    }
+  }
+
   @Permission("betterjails.betterjails.reload")
   @Command("betterjails reload")
   @CommandDescription("Reloads the configuration file, prisoner data and jail data")
-  public void reloadData(final CommandContext<CommandSender> ctx, final CommandSender sender) {
+  public CompletableFuture<Void> reloadData(final CommandContext<CommandSender> ctx, final CommandSender sender) {
+    final CompletableFuture<Void> reloadFuture;
     try {
-      this.plugin.reload();
-      this.plugin.eventBus().post(PluginReloadEvent.class, sender);
-      sender.sendMessage(this.configuration.messages().reloadData(sender.getName()));
+      reloadFuture = this.plugin.reload();
     } catch (final IOException | InvalidConfigurationException ex) {
       LOGGER.error("An error occurred reloading plugin data", ex);
       throw new CommandError(ctx, CommandError.RELOAD_FAILED, CommandError.executorVariable(sender.getName()));
     }
+
+    return reloadFuture.handleAsync((v, ex) -> {
+      if (ex == null) {
+        this.plugin.eventBus().post(PluginReloadEvent.class, sender);
+        sender.sendMessage(this.configuration.messages().reloadData(sender.getName()));
+        return null;
+      } else {
+        LOGGER.error("An error occurred reloading plugin data", ex);
+        throw new CommandError(ctx, CommandError.RELOAD_FAILED, CommandError.executorVariable(sender.getName()));
+      }
+    }, this.plugin);
   }
 
   @Permission("betterjails.betterjails.save")
@@ -385,7 +504,7 @@ public final class CommandHandler {
 
   @Suggestions("jail")
   public Stream<String> suggestJails(final String input) {
-    return this.plugin.jailData().getJails().keySet().stream().filter(name -> name.startsWith(input));
+    return this.plugin.jailData().completeJailNames(input, SUGGESTION_LIMIT).stream();
   }
 
   @Parser(suggestions = "prisoner")
@@ -401,10 +520,7 @@ public final class CommandHandler {
 
   @Suggestions("prisoner")
   public Stream<String> suggestPrisoners(final String input) {
-    return this.plugin.prisonerData().getAllPrisoners().stream()
-        .map(Prisoner::name)
-        .filter(Objects::nonNull)
-        .filter(name -> name.startsWith(input));
+    return this.plugin.prisonerData().completePrisonerNames(input, SUGGESTION_LIMIT).stream();
   }
 
   @ExceptionHandler(CommandError.class)
@@ -0,0 +1,123 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.commands;
+
+import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.config.SubCommandsConfiguration.SubCommand;
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Runs on-jail and on-release subcommands through the server, right away unless a per tick budget is configured, in
+ * which case they are queued up and spread over the following ticks. Commands dispatched from other threads (API
+ * consumers jailing players) are always queued, they only ever run on the main thread.
+ */
+public final class SubCommandDispatcher {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("BetterJails");
+
+  private final BetterJailsPlugin plugin;
+  private final Server server;
+  private final Queue<PendingCommand> queue = new ConcurrentLinkedQueue<>();
+
+  public SubCommandDispatcher(final BetterJailsPlugin plugin) {
+    this.plugin = plugin;
+    this.server = plugin.getServer();
+  }
+
+  public void dispatch(final CommandSender sender, final SubCommand command, final String commandLine) {
+    // anything already queued goes first, commands run in the order they were dispatched
+    if (this.server.isPrimaryThread() && this.queue.isEmpty() && this.plugin.subCommands().commandsPerTick() <= 0) {
+      execute(sender, command, commandLine);
+    } else {
+      this.queue.add(new PendingCommand(sender, command, commandLine));
+    }
+  }
+
+  public void dispatchAsConsole(final SubCommand command, final String commandLine) {
+    dispatch(this.server.getConsoleSender(), command, commandLine);
+  }
+
+  public int queued() {
+    return this.queue.size();
+  }
+
+  /**
+   * Runs as many queued commands as the per tick budget allows, ran every tick on the main thread.
+   */
+  public void tick() {
+    final int commandsPerTick = this.plugin.subCommands().commandsPerTick();
+    runQueued(commandsPerTick <= 0 ? Integer.MAX_VALUE : commandsPerTick);
+  }
+
+  /**
+   * Runs every queued command, for when the plugin is disabling. Main thread only.
+   */
+  public void flush() {
+    runQueued(Integer.MAX_VALUE);
+  }
+
+  private void runQueued(int budget) {
+    PendingCommand pending;
+    while (budget-- > 0 && (pending = this.queue.poll()) != null) {
+      // the prisoner may have left while their commands were waiting
+      if (pending.sender instanceof Player && !((Player) pending.sender).isOnline()) {
+        continue;
+      }
+
+      execute(pending.sender, pending.command, pending.commandLine);
+    }
+  }
+
+  private void execute(final CommandSender sender, final SubCommand command, final String commandLine) {
+    final long start = System.nanoTime();
+    try {
+      this.server.dispatchCommand(sender, commandLine);
+    } catch (final RuntimeException ex) {
+      LOGGER.error("An error occurred running subcommand {}", commandLine, ex);
+    } finally {
+      command.recordExecution(System.nanoTime() - start);
+    }
+  }
+
+  private static final class PendingCommand {
+
+    final CommandSender sender;
+    final SubCommand command;
+    final String commandLine;
+
+    PendingCommand(final CommandSender sender, final SubCommand command, final String commandLine) {
+      this.sender = sender;
+      this.command = command;
+      this.commandLine = commandLine;
+    }
+  }
+}
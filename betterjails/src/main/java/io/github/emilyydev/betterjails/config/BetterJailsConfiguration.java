@@ -36,12 +36,10 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.Function;
-import java.util.regex.MatchResult;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 import static java.util.stream.Collectors.collectingAndThen;
 import static java.util.stream.Collectors.joining;
@@ -53,6 +51,9 @@ public final class BetterJailsConfiguration extends AbstractConfiguration {
   private static final String CHANGE_GROUP = "changeGroup";
   private static final String PRISONER_GROUP = "prisonerGroup";
   private static final String AUTO_SAVE_TIME_IN_MINUTES = "autoSaveTimeInMinutes";
+  private static final String STORAGE = "storage";
+  private static final String STORAGE_SYNC = "storageSync";
+  private static final String PIN_JAIL_CHUNKS = "pinJailChunks";
   private static final String MESSAGES = "messages";
 
   public BetterJailsConfiguration(final Path dir) {
@@ -87,6 +88,26 @@ public final class BetterJailsConfiguration extends AbstractConfiguration {
     return setting(AUTO_SAVE_TIME_IN_MINUTES, key -> Duration.ofMinutes(config().getLong(key)));
   }
 
+  public String storageType() {
+    return setting(STORAGE, key -> config().getString(key).toLowerCase(Locale.ROOT));
+  }
+
+  public String storageSync() {
+    return setting(STORAGE_SYNC, key -> config().getString(key, "never").toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Lower case names of the jails whose chunks are kept loaded while they have online prisoners, {@code *} meaning all.
+   */
+  public Set<String> pinnedJailChunks() {
+    return setting(
+        PIN_JAIL_CHUNKS,
+        key -> config().getStringList(key).stream()
+            .map(name -> name.toLowerCase(Locale.ROOT))
+            .collect(Util.toImmutableSet())
+    );
+  }
+
   public MessageHolder messages() {
     return setting(MESSAGES, key -> {
       final Map<String, Object> loadedMessages = config().getConfigurationSection(key).getValues(false);
@@ -119,6 +140,8 @@ public final class BetterJailsConfiguration extends AbstractConfiguration {
   public static final class MessageHolder {
 
     private static final String JAIL_SUCCESS = "jailSuccess";
+    private static final String JAIL_BULK_SUCCESS = "jailBulkSuccess";
+    private static final String JAIL_BULK_SKIPPED = "jailBulkSkipped";
     private static final String UNJAIL_SUCCESS = "unjailSuccess";
     private static final String SETJAIL_SUCCESS = "setjailSuccess";
     private static final String MODJAIL_SUCCESS = "modify-jail-success";
@@ -129,34 +152,22 @@ public final class BetterJailsConfiguration extends AbstractConfiguration {
     private static final String LIST_JAILS_PREMESSAGE = "listJailsPremessage";
     private static final String JAILS_FORMAT = "jailsFormat";
 
-    private static final Pattern PLACEHOLDERS = Pattern.compile("\\{(prisoner|player|jail|time|reason)}");
-
-    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-    private static Function<? super MatchResult, ? extends String> replacer(
-        final Optional<String> prisoner,
-        final Optional<String> executorName,
-        final Optional<String> jail,
-        final Optional<String> duration,
-        final Optional<String> reason
-    ) {
-      return matchResult -> {
-        switch (matchResult.group(1)) {
-          case "prisoner": return prisoner.orElse(matchResult.group());
-          case "player": return executorName.orElse(matchResult.group());
-          case "jail": return jail.orElse(matchResult.group());
-          case "time": return duration.orElse(matchResult.group());
-          case "reason": return reason.orElse(matchResult.group());
-          default: return matchResult.group();
-        }
-      };
-    }
+    // same order as the arguments of formatMessage
+    private static final String[] PLACEHOLDERS = { "prisoner", "player", "jail", "time", "reason" };
 
     private final Map<String, String> messageMap;
+    private final Map<String, MessageTemplate> templates;
 
     private MessageHolder(final Map<? extends String, ?> messageMap) {
       final ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
-      messageMap.forEach((key, value) -> builder.put(key, String.valueOf(value)));
+      final ImmutableMap.Builder<String, MessageTemplate> templates = ImmutableMap.builder();
+      messageMap.forEach((key, value) -> {
+        final String message = String.valueOf(value);
+        builder.put(key, message);
+        templates.put(key, MessageTemplate.compile(message, true, PLACEHOLDERS));
+      });
       this.messageMap = builder.build();
+      this.templates = templates.build();
     }
 
     public String messageFormat(final String key) {
@@ -173,6 +184,20 @@ public final class BetterJailsConfiguration extends AbstractConfiguration {
       return formatMessage(JAIL_SUCCESS, prisoner, executorName, jail, duration, reason);
     }
 
+    public String jailPlayersSuccess(
+        final String prisoners,
+        final String executorName,
+        final String jail,
+        final String duration,
+        final String reason
+    ) {
+      return formatMessage(JAIL_BULK_SUCCESS, prisoners, executorName, jail, duration, reason);
+    }
+
+    public String jailPlayersSkipped(final String prisoners, final String executorName) {
+      return formatMessage(JAIL_BULK_SKIPPED, prisoners, executorName, null, null, null);
+    }
+
     public String releasePrisonerSuccess(final String prisoner, final String executorName) {
       return formatMessage(UNJAIL_SUCCESS, prisoner, executorName, null, null, null);
     }
@@ -224,21 +249,7 @@ public final class BetterJailsConfiguration extends AbstractConfiguration {
         final @Nullable String duration,
         final @Nullable String reason
     ) {
-      final Matcher matcher = PLACEHOLDERS.matcher(this.messageMap.get(key));
-      final Function<? super MatchResult, ? extends String> replacer = replacer(
-          Optional.ofNullable(prisoner),
-          Optional.ofNullable(executorName),
-          Optional.ofNullable(jail),
-          Optional.ofNullable(duration),
-          Optional.ofNullable(reason)
-      );
-
-      final StringBuffer buffer = new StringBuffer();
-      while (matcher.find()) {
-        matcher.appendReplacement(buffer, replacer.apply(matcher.toMatchResult()));
-      }
-
-      return Util.color(matcher.appendTail(buffer).toString());
+      return this.templates.get(key).format(prisoner, executorName, jail, duration, reason);
     }
   }
 }
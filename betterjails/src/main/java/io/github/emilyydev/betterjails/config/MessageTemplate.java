@@ -0,0 +1,132 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.config;
+
+import io.github.emilyydev.betterjails.util.Util;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message with {@code {placeholder}}s, split up once into its literal parts and placeholder slots so filling it in
+ * is a single pass over them. Placeholders without a value are left as they are.
+ */
+final class MessageTemplate {
+
+  /**
+   * @param template     the raw message
+   * @param color        whether {@code &} colour codes are translated, both in the template and in the values
+   * @param placeholders placeholder names, in the same order their values are given to {@link #format(String...)}
+   */
+  static MessageTemplate compile(final String template, final boolean color, final String... placeholders) {
+    final List<String> literals = new ArrayList<>();
+    final List<Integer> slots = new ArrayList<>();
+    final StringBuilder literal = new StringBuilder();
+    int index = 0;
+    while (index < template.length()) {
+      final int open = template.indexOf('{', index);
+      final int close = open == -1 ? -1 : template.indexOf('}', open);
+      if (close == -1) {
+        break;
+      }
+
+      final int slot = indexOf(placeholders, template.substring(open + 1, close));
+      if (slot == -1) {
+        // not one of ours, keep it as text and look for the next one right after the brace
+        literal.append(template, index, open + 1);
+        index = open + 1;
+        continue;
+      }
+
+      literal.append(template, index, open);
+      literals.add(color ? Util.color(literal.toString()) : literal.toString());
+      slots.add(slot);
+      literal.setLength(0);
+      index = close + 1;
+    }
+
+    literal.append(template, index, template.length());
+    literals.add(color ? Util.color(literal.toString()) : literal.toString());
+
+    final int[] slotArray = new int[slots.size()];
+    for (int i = 0; i < slotArray.length; ++i) {
+      slotArray[i] = slots.get(i);
+    }
+
+    return new MessageTemplate(literals.toArray(new String[0]), slotArray, placeholders.clone(), color);
+  }
+
+  private static int indexOf(final String[] placeholders, final String name) {
+    for (int i = 0; i < placeholders.length; ++i) {
+      if (placeholders[i].equals(name)) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  // literals[i] goes right before slots[i], the last literal goes after every slot
+  private final String[] literals;
+  private final int[] slots;
+  private final String[] placeholders;
+  private final boolean color;
+  private final int literalsLength;
+
+  private MessageTemplate(final String[] literals, final int[] slots, final String[] placeholders, final boolean color) {
+    this.literals = literals;
+    this.slots = slots;
+    this.placeholders = placeholders;
+    this.color = color;
+
+    int literalsLength = 0;
+    for (final String literal : literals) {
+      literalsLength += literal.length();
+    }
+
+    this.literalsLength = literalsLength;
+  }
+
+  String format(final @Nullable String... values) {
+    if (this.slots.length == 0) {
+      return this.literals[0];
+    }
+
+    final StringBuilder builder = new StringBuilder(this.literalsLength + 16 * this.slots.length);
+    for (int i = 0; i < this.slots.length; ++i) {
+      builder.append(this.literals[i]);
+      final int slot = this.slots[i];
+      final String value = slot < values.length ? values[slot] : null;
+      if (value == null) {
+        builder.append('{').append(this.placeholders[slot]).append('}');
+      } else {
+        builder.append(this.color ? Util.color(value) : value);
+      }
+    }
+
+    return builder.append(this.literals[this.slots.length]).toString();
+  }
+}
@@ -24,25 +24,23 @@
 
 package io.github.emilyydev.betterjails.config;
 
-import com.google.common.collect.ImmutableList;
+import io.github.emilyydev.betterjails.commands.SubCommandDispatcher;
 import io.github.emilyydev.betterjails.util.Util;
-import org.bukkit.Server;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.ConfigurationSection;
 
 import java.nio.file.Path;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
-import java.util.function.Function;
-import java.util.regex.MatchResult;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public final class SubCommandsConfiguration extends AbstractConfiguration {
 
   private static final String ON_JAIL = "on-jail";
   private static final String ON_RELEASE = "on-release";
+  private static final String COMMANDS_PER_TICK = "commands-per-tick";
+
+  // same order as the values given to MessageTemplate#format
+  private static final String[] PLACEHOLDERS = { "prisoner", "player" };
 
   public SubCommandsConfiguration(final Path dir) {
     super(dir, "subcommands.yml", HashMap::new);
@@ -56,64 +54,100 @@ public final class SubCommandsConfiguration extends AbstractConfiguration {
     return setting(ON_RELEASE, key -> new SubCommands(config().getConfigurationSection(key)));
   }
 
+  /**
+   * How many subcommands may run each tick, any more are left for the following ticks. 0 or less runs them right away.
+   */
+  public int commandsPerTick() {
+    return setting(COMMANDS_PER_TICK, config()::getInt);
+  }
+
   public static final class SubCommands {
 
     private static final String AS_PRISONER = "as-prisoner";
     private static final String AS_CONSOLE = "as-console";
 
-    private static final Pattern PLACEHOLDERS = Pattern.compile("\\{prisoner}|\\{player}");
-
-    private static Function<? super MatchResult, ? extends String> replacer(
-        final String prisoner,
-        final String executorName
-    ) {
-      return matchResult -> {
-        final String matchedGroup = matchResult.group();
-        switch (Util.removeBracesFromMatchedPlaceholderPleaseAndThankYou(matchedGroup)) {
-          case "prisoner": return prisoner;
-          case "player": return executorName;
-          default: return matchedGroup;
-        }
-      };
-    }
-
-    private final Collection<String> asPrisoner;
-    private final Collection<String> asConsole;
+    private final List<SubCommand> asPrisoner;
+    private final List<SubCommand> asConsole;
 
     private SubCommands(final ConfigurationSection section) {
       final List<String> asPrisoner = section.getStringList(AS_PRISONER);
       asPrisoner.removeIf(String::isEmpty);
-      this.asPrisoner = ImmutableList.copyOf(asPrisoner);
+      this.asPrisoner = compile(asPrisoner);
 
       final List<String> asConsole = section.getStringList(AS_CONSOLE);
       asConsole.removeIf(String::isEmpty);
-      this.asConsole = ImmutableList.copyOf(asConsole);
+      this.asConsole = compile(asConsole);
     }
 
-    public void executeAsPrisoner(final Server server, final CommandSender prisoner, final String executorName) {
-      final String prisonerName = prisoner.getName();
-      this.asPrisoner.stream()
-          .map(s -> replacePlaceholders(s, prisonerName, executorName))
-          .forEach(s -> server.dispatchCommand(prisoner, s));
+    private static List<SubCommand> compile(final List<String> commands) {
+      return commands.stream().map(SubCommand::new).collect(Util.toImmutableList());
     }
 
-    public void executeAsConsole(final Server server, final CommandSender prisoner, final String executorName) {
+    public List<SubCommand> asPrisoner() {
+      return this.asPrisoner;
+    }
+
+    public List<SubCommand> asConsole() {
+      return this.asConsole;
+    }
+
+    public void executeAsPrisoner(final SubCommandDispatcher dispatcher, final CommandSender prisoner, final String executorName) {
       final String prisonerName = prisoner.getName();
-      final CommandSender consoleSender = server.getConsoleSender();
-      this.asConsole.stream()
-          .map(s -> replacePlaceholders(s, prisonerName, executorName))
-          .forEach(s -> server.dispatchCommand(consoleSender, s));
+      for (final SubCommand command : this.asPrisoner) {
+        dispatcher.dispatch(prisoner, command, command.format(prisonerName, executorName));
+      }
     }
 
-    private String replacePlaceholders(final String command, final String prisoner, final String executorName) {
-      final Function<? super MatchResult, ? extends String> replacer = replacer(prisoner, executorName);
-      final Matcher matcher = PLACEHOLDERS.matcher(command);
-      final StringBuffer buffer = new StringBuffer();
-      while (matcher.find()) {
-        matcher.appendReplacement(buffer, replacer.apply(matcher.toMatchResult()));
+    public void executeAsConsole(final SubCommandDispatcher dispatcher, final CommandSender prisoner, final String executorName) {
+      final String prisonerName = prisoner.getName();
+      for (final SubCommand command : this.asConsole) {
+        dispatcher.dispatchAsConsole(command, command.format(prisonerName, executorName));
       }
+    }
+  }
+
+  /**
+   * A configured command, with its placeholders parsed once. Also keeps track of how long it takes to run.
+   */
+  public static final class SubCommand {
+
+    private final String source;
+    private final MessageTemplate template;
+    // main thread only
+    private long executions = 0L;
+    private long totalNanos = 0L;
+    private long maxNanos = 0L;
+
+    private SubCommand(final String source) {
+      this.source = source;
+      this.template = MessageTemplate.compile(source, false, PLACEHOLDERS);
+    }
+
+    public String source() {
+      return this.source;
+    }
+
+    public String format(final String prisonerName, final String executorName) {
+      return this.template.format(prisonerName, executorName);
+    }
+
+    public void recordExecution(final long nanos) {
+      ++this.executions;
+      this.totalNanos += nanos;
+      this.maxNanos = Math.max(this.maxNanos, nanos);
+    }
+
+    public long executions() {
+      return this.executions;
+    }
 
-      return matcher.appendTail(buffer).toString();
+    public String timingReport() {
+      return String.format(
+          "%,d runs, %.2f ms average, %.2f ms max",
+          this.executions,
+          this.executions == 0L ? 0.0 : this.totalNanos / 1e6 / this.executions,
+          this.maxNanos / 1e6
+      );
     }
   }
 }
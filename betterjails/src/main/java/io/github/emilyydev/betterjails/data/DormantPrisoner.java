@@ -0,0 +1,80 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.data;
+
+import com.github.fefo.betterjails.api.model.jail.Jail;
+import com.github.fefo.betterjails.api.util.ImmutableLocation;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.SentenceExpiry;
+import io.github.emilyydev.betterjails.interfaces.storage.BinaryCodec;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Compact in-memory form of a prisoner whose sentence is paused, which is the case for offline prisoners not serving
+ * time. Only the jail is kept as a field, everything else is encoded into a single {@link BinaryCodec} record, the same
+ * one storage writes, and turned back into an {@link ApiPrisoner} when the prisoner is needed again.
+ * <p>
+ * Every field is still on the heap, this only saves the objects an {@link ApiPrisoner} is made of (strings, sets,
+ * the location and durations), so heap use still grows with the number of prisoners. Like in storage, time left is
+ * kept in whole seconds.
+ */
+final class DormantPrisoner {
+
+  static boolean canHibernate(final ApiPrisoner prisoner) {
+    return prisoner.expiry() instanceof SentenceExpiry.OfTimeLeft;
+  }
+
+  static DormantPrisoner of(final ApiPrisoner prisoner) {
+    // records leave unknown last locations out, the placeholder the prisoner has instead is kept
+    final ImmutableLocation unknownLocation = prisoner.unknownLastLocation() ? prisoner.lastLocation() : null;
+    return new DormantPrisoner(prisoner.jail(), unknownLocation, BinaryCodec.encodePrisoner(prisoner));
+  }
+
+  private final Jail jail;
+  private final @Nullable ImmutableLocation unknownLocation;
+  private final byte[] record;
+
+  private DormantPrisoner(final Jail jail, final @Nullable ImmutableLocation unknownLocation, final byte[] record) {
+    this.jail = jail;
+    this.unknownLocation = unknownLocation;
+    this.record = record;
+  }
+
+  int recordSize() {
+    return this.record.length;
+  }
+
+  ApiPrisoner hydrate() {
+    try {
+      // only read if the record has no last location, which is exactly when this isn't null
+      return BinaryCodec.decodePausedPrisoner(this.record, this.jail, this.unknownLocation);
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+}
@@ -30,20 +30,38 @@ import com.github.fefo.betterjails.api.model.jail.Jail;
 import com.github.fefo.betterjails.api.util.ImmutableLocation;
 import io.github.emilyydev.betterjails.BetterJailsPlugin;
 import io.github.emilyydev.betterjails.api.impl.model.jail.ApiJail;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
 import io.github.emilyydev.betterjails.interfaces.storage.StorageAccess;
+import io.github.emilyydev.betterjails.util.ChunkTickets;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 
 public final class JailDataHandler {
   private final BetterJailsPlugin plugin;
   private final StorageAccess storage;
-  private final Map<String, Jail> jails = new HashMap<>();
+  // replaced as a whole when reloading
+  private volatile Map<String, Jail> jails = new ConcurrentHashMap<>();
+  private volatile NameIndex jailNames = new NameIndex();
+  // chunks we hold a plugin ticket on, main thread only
+  private final Set<PinnedChunk> pinnedChunks = new HashSet<>();
+  // chunks held for a short while through holdChunk, main thread only. A plugin only gets one ticket per chunk, so it's
+  // only removed once neither this nor pinnedChunks needs it
+  private final Map<PinnedChunk, ChunkHold> heldChunks = new HashMap<>();
 
   public JailDataHandler(final BetterJailsPlugin plugin) {
     this.plugin = plugin;
@@ -58,6 +76,7 @@ public final class JailDataHandler {
   private void loadJails() throws IOException {
     try {
       this.jails.putAll(this.storage.loadJails().get());
+      this.jailNames = indexNames(this.jails);
     } catch (final InterruptedException ex) {
       // bleh
     } catch (final ExecutionException ex) {
@@ -65,6 +84,25 @@ public final class JailDataHandler {
     }
   }
 
+  /**
+   * Reloads jails from storage without blocking the calling thread, the new jails replace the current ones on the main
+   * thread once loaded.
+   */
+  public CompletableFuture<Void> reload() {
+    return this.storage.loadJails()
+        .thenApply(loadedJails -> new ConcurrentHashMap<>(loadedJails))
+        .thenAcceptAsync(loadedJails -> {
+          this.jails = loadedJails;
+          this.jailNames = indexNames(loadedJails);
+        }, this.plugin);
+  }
+
+  private static NameIndex indexNames(final Map<String, Jail> jails) {
+    final NameIndex names = new NameIndex();
+    jails.keySet().forEach(names::add);
+    return names;
+  }
+
   public CompletableFuture<Void> save() {
     return this.storage.saveJails(this.jails);
   }
@@ -77,16 +115,177 @@ public final class JailDataHandler {
     return this.jails.get(name.toLowerCase(Locale.ROOT));
   }
 
+  /**
+   * Returns up to {@code limit} jail names starting with the given prefix, ignoring case, sorted alphabetically.
+   */
+  public List<String> completeJailNames(final String prefix, final int limit) {
+    return this.jailNames.complete(prefix, limit);
+  }
+
+  /**
+   * Keeps plugin chunk tickets on the location and release location chunks of the jails configured to be pinned while
+   * they have online prisoners, and removes them once they don't. Ran periodically on the main thread.
+   */
+  public void updateChunkTickets() {
+    final Set<String> pinnedJails = this.plugin.configuration().pinnedJailChunks();
+    final boolean pinning = ChunkTickets.supported() && !pinnedJails.isEmpty();
+    if (!pinning && this.pinnedChunks.isEmpty()) {
+      return;
+    }
+
+    // a plugin ticket makes its chunk entity-ticking, which keeps the ones surrounding it loaded as well
+    final Set<PinnedChunk> wanted = new HashSet<>();
+    if (pinning) {
+      final PrisonerDataHandler prisonerData = this.plugin.prisonerData();
+      for (final Player player : this.plugin.getServer().getOnlinePlayers()) {
+        final UUID uuid = player.getUniqueId();
+        if (!prisonerData.isPlayerJailed(uuid)) {
+          continue;
+        }
+
+        final ApiPrisoner prisoner = prisonerData.getPrisoner(uuid);
+        if (prisoner == null || prisoner.released()) {
+          continue;
+        }
+
+        final Jail jail = prisoner.jail();
+        if (pinnedJails.contains("*") || pinnedJails.contains(jail.name().toLowerCase(Locale.ROOT))) {
+          wanted.add(PinnedChunk.of(jail.location()));
+          final ImmutableLocation releaseLocation = jail.releaseLocation();
+          if (releaseLocation != null) {
+            wanted.add(PinnedChunk.of(releaseLocation));
+          }
+        }
+      }
+    }
+
+    final Iterator<PinnedChunk> iterator = this.pinnedChunks.iterator();
+    while (iterator.hasNext()) {
+      final PinnedChunk chunk = iterator.next();
+      final World world = this.plugin.getServer().getWorld(chunk.worldName);
+      if (world == null) {
+        // tickets go away along with their world, it gets a new one below if it's loaded again
+        iterator.remove();
+      } else if (!wanted.contains(chunk)) {
+        iterator.remove();
+        if (!this.heldChunks.containsKey(chunk)) {
+          ChunkTickets.remove(world, chunk.x, chunk.z, this.plugin);
+        }
+      }
+    }
+
+    for (final PinnedChunk chunk : wanted) {
+      final World world = this.plugin.getServer().getWorld(chunk.worldName);
+      if (world != null && this.pinnedChunks.add(chunk)) {
+        ChunkTickets.add(world, chunk.x, chunk.z, this.plugin);
+      }
+    }
+  }
+
+  /**
+   * Keeps the chunk at the given location loaded for the given number of ticks, so it's still there when a player that
+   * it was loaded for gets to it. Does nothing if chunk tickets aren't supported. Must be called on the main thread, and
+   * the chunk should already be loaded, otherwise it's loaded right away.
+   */
+  public void holdChunk(final Location location, final long ticks) {
+    final World world = location.getWorld();
+    // the world could have been unloaded since the location was made
+    if (!ChunkTickets.supported() || world == null || this.plugin.getServer().getWorld(world.getUID()) != world) {
+      return;
+    }
+
+    final PinnedChunk chunk = new PinnedChunk(world.getName(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    ChunkHold existingHold = this.heldChunks.get(chunk);
+    if (existingHold == null) {
+      existingHold = new ChunkHold();
+      this.heldChunks.put(chunk, existingHold);
+      if (!this.pinnedChunks.contains(chunk)) {
+        ChunkTickets.add(world, chunk.x, chunk.z, this.plugin);
+      }
+    }
+
+    final ChunkHold hold = existingHold;
+    ++hold.count;
+    this.plugin.getServer().getScheduler().runTaskLater(this.plugin, () -> {
+      // if the world was unloaded meanwhile the hold was forgotten along with its ticket, a chunk of a world loaded
+      // again under the same name has a hold of its own
+      if (this.heldChunks.get(chunk) == hold && --hold.count == 0) {
+        this.heldChunks.remove(chunk);
+        final World currentWorld = this.plugin.getServer().getWorld(chunk.worldName);
+        if (currentWorld != null && !this.pinnedChunks.contains(chunk)) {
+          ChunkTickets.remove(currentWorld, chunk.x, chunk.z, this.plugin);
+        }
+      }
+    }, ticks);
+  }
+
+  /**
+   * Forgets about the chunk tickets held in the given world when it unloads, as they're gone along with it. Chunks that
+   * should still be pinned get a new ticket once the world is loaded again. Must be called on the main thread.
+   */
+  public void forgetChunkTickets(final World world) {
+    final String worldName = world.getName();
+    this.pinnedChunks.removeIf(chunk -> chunk.worldName.equals(worldName));
+    this.heldChunks.keySet().removeIf(chunk -> chunk.worldName.equals(worldName));
+  }
+
   public CompletableFuture<Void> addJail(final String name, final ImmutableLocation location) {
     final String lowerCaseName = name.toLowerCase(Locale.ROOT);
-    this.jails.computeIfAbsent(lowerCaseName, key -> new ApiJail(key, location, null)).location(location);
+    this.jails.computeIfAbsent(lowerCaseName, key -> {
+      this.jailNames.add(key);
+      return new ApiJail(key, location, null);
+    }).location(location);
     this.plugin.eventBus().post(JailCreateEvent.class, name, location);
     return save();
   }
 
   public CompletableFuture<Void> removeJail(final Jail jail) {
-    this.jails.remove(jail.name().toLowerCase(Locale.ROOT));
+    final String lowerCaseName = jail.name().toLowerCase(Locale.ROOT);
+    if (this.jails.remove(lowerCaseName) != null) {
+      this.jailNames.remove(lowerCaseName);
+    }
+
     this.plugin.eventBus().post(JailDeleteEvent.class, jail);
     return save();
   }
+
+  private static final class ChunkHold {
+
+    int count = 0;
+  }
+
+  private static final class PinnedChunk {
+
+    final String worldName;
+    final int x;
+    final int z;
+
+    PinnedChunk(final String worldName, final int x, final int z) {
+      this.worldName = worldName;
+      this.x = x;
+      this.z = z;
+    }
+
+    static PinnedChunk of(final ImmutableLocation location) {
+      return new PinnedChunk(location.getWorldName(), (int) Math.floor(location.getX()) >> 4, (int) Math.floor(location.getZ()) >> 4);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof PinnedChunk)) {
+        return false;
+      }
+
+      final PinnedChunk that = (PinnedChunk) other;
+      return this.x == that.x && this.z == that.z && this.worldName.equals(that.worldName);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * this.worldName.hashCode() + this.x) + this.z;
+    }
+  }
 }
@@ -0,0 +1,107 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.data;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Case-insensitive index of names for tab completion. Names are kept sorted by their lower case form, so completing a
+ * prefix only visits the names that start with it instead of every name.
+ * <p>
+ * The same name can be added more than once (two prisoners may share a name after a name change), it stays in the
+ * index until it was removed as many times as it was added.
+ */
+final class NameIndex {
+
+  private final NavigableMap<String, Entry> names = new TreeMap<>();
+
+  synchronized void add(final @Nullable String name) {
+    if (name == null) {
+      return;
+    }
+
+    final Entry entry = this.names.computeIfAbsent(name.toLowerCase(Locale.ROOT), key -> new Entry(name));
+    ++entry.count;
+  }
+
+  synchronized void remove(final @Nullable String name) {
+    if (name == null) {
+      return;
+    }
+
+    final String key = name.toLowerCase(Locale.ROOT);
+    final Entry entry = this.names.get(key);
+    if (entry != null && --entry.count == 0) {
+      this.names.remove(key);
+    }
+  }
+
+  void replace(final @Nullable String oldName, final @Nullable String newName) {
+    if (oldName == null ? newName != null : !oldName.equals(newName)) {
+      remove(oldName);
+      add(newName);
+    }
+  }
+
+  /**
+   * Returns up to {@code limit} names that start with the given prefix ignoring case, sorted alphabetically.
+   */
+  synchronized List<String> complete(final String prefix, final int limit) {
+    final String lowerCasePrefix = prefix.toLowerCase(Locale.ROOT);
+    List<String> out = Collections.emptyList();
+    for (final Map.Entry<String, Entry> entry : this.names.tailMap(lowerCasePrefix, true).entrySet()) {
+      if (out.size() == limit || !entry.getKey().startsWith(lowerCasePrefix)) {
+        break;
+      }
+
+      if (out.isEmpty()) {
+        out = new ArrayList<>();
+      }
+
+      out.add(entry.getValue().name);
+    }
+
+    return out;
+  }
+
+  private static final class Entry {
+
+    // as it was first added
+    final String name;
+    int count = 0;
+
+    Entry(final String name) {
+      this.name = name;
+    }
+  }
+}
@@ -32,16 +32,25 @@ import com.github.fefo.betterjails.api.model.jail.Jail;
 import com.github.fefo.betterjails.api.model.prisoner.Prisoner;
 import com.github.fefo.betterjails.api.util.ImmutableLocation;
 import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.api.impl.model.jail.ApiJail;
 import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
 import io.github.emilyydev.betterjails.api.impl.model.prisoner.SentenceExpiry;
 import io.github.emilyydev.betterjails.config.BetterJailsConfiguration;
 import io.github.emilyydev.betterjails.config.SubCommandsConfiguration;
 import io.github.emilyydev.betterjails.interfaces.permission.PermissionInterface;
+import io.github.emilyydev.betterjails.interfaces.permission.PlayerGroups;
+import io.github.emilyydev.betterjails.interfaces.storage.MappedPrisoners;
 import io.github.emilyydev.betterjails.interfaces.storage.StorageAccess;
 import io.github.emilyydev.betterjails.util.Teleport;
 import io.github.emilyydev.betterjails.util.Util;
+import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.Server;
 import org.bukkit.entity.Player;
@@ -49,20 +58,27 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 public final class PrisonerDataHandler {
@@ -74,7 +90,30 @@ public final class PrisonerDataHandler {
   private final SubCommandsConfiguration subCommands;
   private final StorageAccess storage;
   private final Server server;
-  private final Map<UUID, ApiPrisoner> prisoners = new HashMap<>();
+  // prisoners are looked up from async API consumers and storage continuations, not just the main thread.
+  // These are replaced as a whole (on the main thread) when reloading.
+  private volatile Map<UUID, ApiPrisoner> prisoners = new ConcurrentHashMap<>();
+  // paused prisoners that haven't been needed since they were last written, a prisoner may only briefly be in both maps
+  // while moving between them, in which case the one in prisoners is the current one
+  private volatile Map<UUID, DormantPrisoner> dormantPrisoners = new ConcurrentHashMap<>();
+  // prisoners loaded by storage that haven't been needed since, they are decoded once and moved to prisoners when they
+  // are first looked up, after which they're taken and no longer found here
+  private volatile MappedPrisoners storedPrisoners = MappedPrisoners.EMPTY;
+  private final Map<UUID, Boolean> takenStoredPrisoners = new ConcurrentHashMap<>();
+  private volatile SentenceExpiryIndex expiryIndex = new SentenceExpiryIndex();
+  private volatile NameIndex prisonerNames = new NameIndex();
+  // prisoners saved or removed while a reload is loading data from storage
+  private volatile @Nullable Set<UUID> reloadChanges = null;
+  // held while a prisoner is saved or removed, and while a reload carries those changes over and swaps the maps, so a
+  // change can't land in the maps that are being replaced
+  private final Object registryLock = new Object();
+  private final AtomicLong prisonersVersion = new AtomicLong();
+  private final AtomicReference<PrisonersSnapshot> prisonersSnapshot = new AtomicReference<>(PrisonersSnapshot.EMPTY);
+  // prisoners changed since their last successful write
+  private final Set<UUID> dirtyPrisoners = ConcurrentHashMap.newKeySet();
+  private final AtomicLong skippedPrisonerWrites = new AtomicLong();
+  private volatile int lastSaveSkippedPrisoners = 0;
+  private volatile CompletableFuture<Void> loadFuture = CompletableFuture.completedFuture(null);
 
   private @Deprecated ImmutableLocation backupLocation;
 
@@ -86,33 +125,257 @@ public final class PrisonerDataHandler {
     this.storage = plugin.storageAccess();
   }
 
-  public void load() throws IOException {
+  /**
+   * Reloads prisoner data from storage without blocking the calling thread. The new registry is built on the I/O
+   * thread and swapped in on the main thread, so the prisoner map is never observed empty or half loaded. Prisoners
+   * saved or released while the data was loading are carried over to the new registry.
+   */
+  public CompletableFuture<Void> reload() {
     // TODO(v2): can't remove this yet
     this.backupLocation = this.config.backupLocation();
-    this.prisoners.clear();
-    loadPrisoners();
+    final Set<UUID> changes = ConcurrentHashMap.newKeySet();
+    this.reloadChanges = changes;
+
+    return this.storage.loadPrisoners()
+        .thenApply(LoadedPrisoners::new)
+        .thenAcceptAsync(loaded -> {
+          synchronized (this.registryLock) {
+            for (final UUID uuid : changes) {
+              final ApiPrisoner prisoner = lookup(uuid);
+              final ApiPrisoner previous = loaded.take(uuid);
+              if (prisoner == null) {
+                loaded.expiryIndex.remove(uuid);
+                loaded.names.remove(previous == null ? null : previous.name());
+              } else {
+                loaded.prisoners.put(uuid, prisoner);
+                loaded.expiryIndex.schedule(prisoner);
+                loaded.names.replace(previous == null ? null : previous.name(), prisoner.name());
+              }
+            }
+
+            this.prisoners = loaded.prisoners;
+            this.dormantPrisoners = loaded.dormantPrisoners;
+            this.storedPrisoners = MappedPrisoners.EMPTY;
+            this.takenStoredPrisoners.clear();
+            this.expiryIndex = loaded.expiryIndex;
+            this.prisonerNames = loaded.names;
+            this.reloadChanges = null;
+            this.dirtyPrisoners.retainAll(changes);
+            this.prisonersVersion.incrementAndGet();
+          }
+        }, this.plugin)
+        .whenComplete((v, ex) -> {
+          if (ex != null) {
+            this.reloadChanges = null;
+          }
+        });
+  }
+
+  /**
+   * Loads prisoners without blocking the calling thread, the loaded prisoners are added as soon as storage is done
+   * (the prisoner registry is concurrent, so this doesn't wait for the main thread). Until then {@link #awaitLoaded}
+   * can be used to wait for them.
+   */
+  public CompletableFuture<Void> loadAsync() {
+    // TODO(v2): can't remove this yet
+    this.backupLocation = this.config.backupLocation();
+    final CompletableFuture<Void> future = this.storage.loadPrisoners().thenAccept(this::mergeLoadedPrisoners);
+    this.loadFuture = future;
+    return future;
   }
 
-  private void loadPrisoners() throws IOException {
+  /**
+   * Blocks until prisoner data started by {@link #loadAsync} is loaded, must not be called from the main thread.
+   *
+   * @return {@code true} if prisoner data is loaded, {@code false} if it failed to load or didn't load in time
+   */
+  public boolean awaitLoaded(final Duration timeout) {
     try {
-      this.prisoners.putAll(this.storage.loadPrisoners().get());
+      this.loadFuture.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+      return true;
     } catch (final InterruptedException ex) {
-      // bleh
-    } catch (final ExecutionException ex) {
-      throw new IOException(ex.getCause());
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (final ExecutionException | TimeoutException ex) {
+      return false;
     }
   }
 
+  private void mergeLoadedPrisoners(final Map<UUID, ApiPrisoner> loadedPrisoners) {
+    if (loadedPrisoners instanceof MappedPrisoners) {
+      // nothing is decoded here, prisoners jailed while data was loading are in prisoners and found first anyway
+      final MappedPrisoners storedPrisoners = (MappedPrisoners) loadedPrisoners;
+      this.storedPrisoners = storedPrisoners;
+      this.prisonersVersion.incrementAndGet();
+      this.server.getScheduler().runTaskAsynchronously(this.plugin, () -> indexStoredPrisoners(storedPrisoners));
+      return;
+    }
+
+    // prisoners jailed while data was loading take precedence over what was stored
+    for (final ApiPrisoner prisoner : loadedPrisoners.values()) {
+      final UUID uuid = prisoner.uuid();
+      final boolean added;
+      if (DormantPrisoner.canHibernate(prisoner)) {
+        added = !this.prisoners.containsKey(uuid) && this.dormantPrisoners.putIfAbsent(uuid, DormantPrisoner.of(prisoner)) == null;
+      } else {
+        added = this.prisoners.putIfAbsent(uuid, prisoner) == null;
+      }
+
+      if (added) {
+        this.expiryIndex.schedule(prisoner);
+        this.prisonerNames.add(prisoner.name());
+      }
+    }
+
+    this.prisonersVersion.incrementAndGet();
+  }
+
+  /**
+   * Adds the deadlines and names of stored prisoners to the indexes, from what storage keeps next to their records so
+   * they don't have to be decoded. Until this is done their names can't be completed and the timer doesn't see them.
+   */
+  private void indexStoredPrisoners(final MappedPrisoners storedPrisoners) {
+    final boolean timeRunning = this.config.considerOfflineTime();
+    final SentenceExpiryIndex expiryIndex = this.expiryIndex;
+    final NameIndex names = this.prisonerNames;
+    try {
+      storedPrisoners.forEachSummary((uuid, secondsLeft, runningSince, name) -> {
+        if (this.storedPrisoners != storedPrisoners || this.takenStoredPrisoners.containsKey(uuid)) {
+          return;
+        }
+
+        // the same deadlines these prisoners get when they are decoded
+        if (timeRunning || this.server.getPlayer(uuid) != null) {
+          expiryIndex.scheduleIfAbsent(uuid, runningSince.plusSeconds(secondsLeft));
+        } else if (secondsLeft <= 0L) {
+          expiryIndex.scheduleIfAbsent(uuid, Instant.MIN);
+        }
+
+        names.add(name);
+      });
+    } catch (final RuntimeException ex) {
+      LOGGER.error("Could not index stored prisoners", ex);
+    }
+  }
+
+  /**
+   * Returns an immutable snapshot of every known prisoner. The snapshot is shared between callers and only rebuilt
+   * after the prisoner map changes, so it is cheap to call at high rates and from any thread.
+   * <p>
+   * Dormant and stored prisoners are decoded while iterating the snapshot and are not kept around, so every iteration
+   * decodes all of them again. Callers that go over every prisoner often should keep what they need from one pass.
+   */
   public Collection<Prisoner> getAllPrisoners() {
-    return Collections.unmodifiableCollection(this.prisoners.values());
+    final long version = this.prisonersVersion.get();
+    final PrisonersSnapshot snapshot = this.prisonersSnapshot.get();
+    if (snapshot.version == version) {
+      return snapshot.prisoners;
+    }
+
+    // stored and dormant ones first, a prisoner woken up in between is then found in both and not missed
+    final MappedPrisoners storedPrisoners = this.storedPrisoners;
+    final Set<UUID> takenStoredPrisoners = ImmutableSet.copyOf(this.takenStoredPrisoners.keySet());
+    final Map<UUID, DormantPrisoner> dormantPrisoners = ImmutableMap.copyOf(this.dormantPrisoners);
+    final Map<UUID, ApiPrisoner> prisoners = ImmutableMap.copyOf(this.prisoners);
+    final PrisonersSnapshot newSnapshot = new PrisonersSnapshot(
+        version, new SnapshotCollection(prisoners, dormantPrisoners, storedPrisoners, takenStoredPrisoners)
+    );
+    // if the map changed while copying, the version moved on and the next caller will rebuild it anyway
+    this.prisonersSnapshot.compareAndSet(snapshot, newSnapshot);
+    return newSnapshot.prisoners;
   }
 
   public boolean isPlayerJailed(final UUID uuid) {
-    return this.prisoners.containsKey(uuid);
+    return this.prisoners.containsKey(uuid)
+           || this.dormantPrisoners.containsKey(uuid)
+           || (this.storedPrisoners.containsKey(uuid) && !this.takenStoredPrisoners.containsKey(uuid));
   }
 
   public ApiPrisoner getPrisoner(final UUID uuid) {
-    return this.prisoners.get(uuid);
+    return lookup(uuid);
+  }
+
+  /**
+   * How many prisoners are fully in memory.
+   */
+  public int activePrisonerCount() {
+    return this.prisoners.size();
+  }
+
+  /**
+   * How many prisoners are kept in memory in their encoded form until they are needed.
+   */
+  public int dormantPrisonerCount() {
+    return this.dormantPrisoners.size();
+  }
+
+  /**
+   * How many bytes the encoded records of dormant prisoners take, not counting object overhead.
+   */
+  public long dormantPrisonerBytes() {
+    long bytes = 0L;
+    for (final DormantPrisoner dormantPrisoner : this.dormantPrisoners.values()) {
+      bytes += dormantPrisoner.recordSize();
+    }
+
+    return bytes;
+  }
+
+  /**
+   * How many prisoners are only in the storage's memory-mapped snapshot, not on the heap, until they are needed.
+   */
+  public int storedPrisonerCount() {
+    return Math.max(0, this.storedPrisoners.size() - this.takenStoredPrisoners.size());
+  }
+
+  private @Nullable ApiPrisoner lookup(final UUID uuid) {
+    final ApiPrisoner prisoner = this.prisoners.get(uuid);
+    return prisoner != null ? prisoner : wakeUp(uuid);
+  }
+
+  /**
+   * Turns a dormant prisoner back into a regular one, it stays that way until the next save finds it unchanged.
+   */
+  private @Nullable ApiPrisoner wakeUp(final UUID uuid) {
+    final Map<UUID, ApiPrisoner> prisoners = this.prisoners;
+    final Map<UUID, DormantPrisoner> dormantPrisoners = this.dormantPrisoners;
+    final MappedPrisoners storedPrisoners = this.storedPrisoners;
+    if (dormantPrisoners.isEmpty() && storedPrisoners.isEmpty()) {
+      return null;
+    }
+
+    // atomic with respect to removing the dormant prisoner, a prisoner being released can't be brought back
+    dormantPrisoners.computeIfPresent(uuid, (key, dormantPrisoner) -> {
+      prisoners.putIfAbsent(key, dormantPrisoner.hydrate());
+      return null;
+    });
+
+    if (storedPrisoners.containsKey(uuid)) {
+      // decoded only once, whoever comes second waits for it to be in prisoners
+      this.takenStoredPrisoners.computeIfAbsent(uuid, key -> {
+        prisoners.putIfAbsent(key, storedPrisoners.get(key));
+        return Boolean.TRUE;
+      });
+    }
+
+    return prisoners.get(uuid);
+  }
+
+  private void hibernate(final ApiPrisoner prisoner) {
+    final UUID uuid = prisoner.uuid();
+    final DormantPrisoner dormantPrisoner = DormantPrisoner.of(prisoner);
+    this.dormantPrisoners.put(uuid, dormantPrisoner);
+    if (!this.prisoners.remove(uuid, prisoner)) {
+      // it changed meanwhile, it's not dormant any more
+      this.dormantPrisoners.remove(uuid, dormantPrisoner);
+    }
+  }
+
+  /**
+   * Returns up to {@code limit} prisoner names starting with the given prefix, ignoring case, sorted alphabetically.
+   */
+  public List<String> completePrisonerNames(final String prefix, final int limit) {
+    return this.prisonerNames.complete(prefix, limit);
   }
 
   public void addJailedPlayer(
@@ -125,7 +388,68 @@ public final class PrisonerDataHandler {
       final boolean teleport
   ) {
     final UUID prisonerUuid = player.getUniqueId();
-    final ApiPrisoner existingPrisoner = this.prisoners.get(prisonerUuid);
+    imprison(player, jail, jailer, jailerName, sentenceDuration, reason, teleport).thenComposeAsync(imprisonment -> {
+      this.plugin.eventBus().post(PlayerImprisonEvent.class, imprisonment.prisoner);
+      return imprisonment.changeGroup().thenComposeAsync(v -> savePrisoner(imprisonment.prisoner), this.plugin);
+    }, this.plugin).exceptionally(error -> {
+      LOGGER.error("An error occurred saving prisoner data for {}", prisonerUuid, error);
+      return null;
+    });
+  }
+
+  /**
+   * Jails many players at once. Their groups are fetched and changed concurrently, the events are posted together once
+   * every prisoner is ready and all of them are written in a single storage batch. Each player counts as jailed as soon
+   * as their own groups are known, without waiting for the rest.
+   */
+  public CompletableFuture<List<ApiPrisoner>> addJailedPlayers(
+      final Collection<? extends OfflinePlayer> players,
+      final Jail jail,
+      final UUID jailer,
+      final @Nullable String jailerName,
+      final Duration sentenceDuration,
+      final @Nullable String reason,
+      final boolean teleport
+  ) {
+    final List<CompletableFuture<Imprisonment>> imprisonments = new ArrayList<>(players.size());
+    for (final OfflinePlayer player : players) {
+      imprisonments.add(imprison(player, jail, jailer, jailerName, sentenceDuration, reason, teleport).thenApplyAsync(imprisonment -> {
+        track(imprisonment.prisoner);
+        return imprisonment;
+      }, this.plugin));
+    }
+
+    return CompletableFuture.allOf(imprisonments.toArray(new CompletableFuture<?>[0])).thenComposeAsync(v -> {
+      final List<ApiPrisoner> prisoners = new ArrayList<>(imprisonments.size());
+      final List<CompletableFuture<?>> groupChanges = new ArrayList<>(imprisonments.size());
+      for (final CompletableFuture<Imprisonment> future : imprisonments) {
+        final Imprisonment imprisonment = future.join();
+        prisoners.add(imprisonment.prisoner);
+        this.plugin.eventBus().post(PlayerImprisonEvent.class, imprisonment.prisoner);
+        groupChanges.add(imprisonment.changeGroup().toCompletableFuture());
+      }
+
+      return CompletableFuture.allOf(groupChanges.toArray(new CompletableFuture<?>[0]))
+          .thenComposeAsync(v2 -> writePrisoners(prisoners), this.plugin)
+          .thenApply(v2 -> prisoners);
+    }, this.plugin);
+  }
+
+  /**
+   * Does everything needed to jail a player except for posting the event, changing their group and writing them, which
+   * is up to the callers. The returned future completes once the player's groups are known.
+   */
+  private CompletableFuture<Imprisonment> imprison(
+      final OfflinePlayer player,
+      final Jail jail,
+      final UUID jailer,
+      final @Nullable String jailerName,
+      final Duration sentenceDuration,
+      final @Nullable String reason,
+      final boolean teleport
+  ) {
+    final UUID prisonerUuid = player.getUniqueId();
+    final ApiPrisoner existingPrisoner = lookup(prisonerUuid);
 
     final boolean isPlayerOnline = player.isOnline();
     final boolean isPlayerJailed = existingPrisoner != null;
@@ -147,14 +471,14 @@ public final class PrisonerDataHandler {
       }
 
       if (teleport) {
-        Teleport.teleportAsync(onlinePlayer, jail.location().mutable());
+        Teleport.teleportAsync(onlinePlayer, ApiJail.mutableLocationOf(jail));
       }
 
       if (!isPlayerJailed) {
         // If the player is going to jail (not just moving between jails), run the onJail commands.
         final SubCommandsConfiguration.SubCommands subCommands = this.subCommands.onJail();
-        subCommands.executeAsPrisoner(this.server, onlinePlayer, jailerName == null ? "" : jailerName);
-        subCommands.executeAsConsole(this.server, onlinePlayer, jailerName == null ? "" : jailerName);
+        subCommands.executeAsPrisoner(this.plugin.subCommandDispatcher(), onlinePlayer, jailerName == null ? "" : jailerName);
+        subCommands.executeAsConsole(this.plugin.subCommandDispatcher(), onlinePlayer, jailerName == null ? "" : jailerName);
       }
     }
 
@@ -185,50 +509,95 @@ public final class PrisonerDataHandler {
 
     final boolean groupsUnknown = existingPrisoner == null || existingPrisoner.primaryGroup() == null || existingPrisoner.released();
 
-    final CompletionStage<? extends String> primaryGroupFuture = groupsUnknown
-        ? permissionInterface.fetchPrimaryGroup(player).exceptionally(ex -> null)
-        : CompletableFuture.completedFuture(existingPrisoner.primaryGroup());
-    final CompletionStage<? extends Set<? extends String>> parentGroupsFuture = groupsUnknown
-        ? permissionInterface.fetchParentGroups(player).thenApply(Function.<Set<? extends String>>identity()).exceptionally(ex -> ImmutableSet.of())
-        : CompletableFuture.completedFuture(existingPrisoner.parentGroups());
+    final CompletionStage<? extends PlayerGroups> groupsFuture = groupsUnknown
+        ? permissionInterface.fetchGroups(player).thenApply(Function.<PlayerGroups>identity()).exceptionally(ex -> PlayerGroups.NONE)
+        : CompletableFuture.completedFuture(new PlayerGroups(existingPrisoner.primaryGroup(), existingPrisoner.parentGroups()));
 
-    primaryGroupFuture.thenCombineAsync(parentGroupsFuture, (primaryGroup, parentGroups) -> {
-      final ApiPrisoner prisoner = new ApiPrisoner(prisonerUuid, player.getName(), primaryGroup, parentGroups, jail, jailerName, expiry, sentenceDuration, reason, lastLocation, unknownLocation);
+    return groupsFuture.thenApply(groups -> {
+      final ApiPrisoner prisoner = new ApiPrisoner(prisonerUuid, player.getName(), groups.primaryGroup(), groups.parentGroups(), jail, jailerName, expiry, sentenceDuration, reason, lastLocation, unknownLocation);
+      return new Imprisonment(player, prisoner, groupsUnknown, jailer, jailerName);
+    }).toCompletableFuture();
+  }
 
-      this.plugin.eventBus().post(PlayerImprisonEvent.class, prisoner);
-      final CompletionStage<?> setGroupFuture = groupsUnknown
-          ? permissionInterface.setPrisonerGroup(player, jailer, jailerName)
-          : CompletableFuture.completedFuture(null);
-      return setGroupFuture.exceptionally(ex -> {
-        if (permissionInterface != PermissionInterface.NULL) {
-          LOGGER.error("An error occurred changing the prisoner group for {}", prisonerUuid, ex);
-        }
+  public CompletableFuture<Void> savePrisoner(final ApiPrisoner prisoner) {
+    track(prisoner);
+    return this.storage.savePrisoner(prisoner).thenRun(() -> markClean(prisoner));
+  }
 
-        return null;
-      }).thenComposeAsync(v -> savePrisoner(prisoner), this.plugin).exceptionally(error -> {
-        LOGGER.error("An error occurred saving prisoner data for {}", prisonerUuid, error);
-        return null;
-      });
-    }, this.plugin);
+  /**
+   * Writes prisoners that were already tracked in a single storage batch.
+   */
+  private CompletableFuture<Void> writePrisoners(final List<ApiPrisoner> prisoners) {
+    final Map<UUID, ApiPrisoner> batch = new LinkedHashMap<>(prisoners.size());
+    for (final ApiPrisoner prisoner : prisoners) {
+      batch.put(prisoner.uuid(), prisoner);
+    }
+
+    return this.storage.savePrisoners(batch).thenRun(() -> prisoners.forEach(this::markClean));
   }
 
-  public CompletableFuture<Void> savePrisoner(final ApiPrisoner prisoner) {
-    this.prisoners.put(prisoner.uuid(), prisoner);
+  private void track(final ApiPrisoner prisoner) {
+    final UUID uuid = prisoner.uuid();
+    synchronized (this.registryLock) {
+      wakeUp(uuid);
+      final ApiPrisoner previous = this.prisoners.put(uuid, prisoner);
+      this.expiryIndex.schedule(prisoner);
+      this.prisonerNames.replace(previous == null ? null : previous.name(), prisoner.name());
+      this.prisonersVersion.incrementAndGet();
+      this.dirtyPrisoners.add(uuid);
+      recordReloadChange(uuid);
+    }
+  }
 
-    return this.storage.savePrisoner(prisoner);
+  /**
+   * Clears the dirty flag of a prisoner once it was written, unless it has been replaced in the meantime, in which case
+   * the newer write (or the next save) takes care of it.
+   */
+  private void markClean(final ApiPrisoner writtenPrisoner) {
+    final UUID uuid = writtenPrisoner.uuid();
+    if (this.prisoners.get(uuid) == writtenPrisoner) {
+      this.dirtyPrisoners.remove(uuid);
+      // it could have been replaced between both checks
+      if (this.prisoners.get(uuid) != writtenPrisoner) {
+        this.dirtyPrisoners.add(uuid);
+      }
+    }
   }
 
-  public void deletePrisonerFile(final ApiPrisoner prisoner) {
-    try {
-      this.storage.deletePrisoner(prisoner).get();
-    } catch (final InterruptedException | ExecutionException ex) {
-      LOGGER.error("Could not delete prisoner {}/{}", prisoner.uuid(), prisoner.name(), ex);
+  private void removePrisoner(final UUID uuid) {
+    synchronized (this.registryLock) {
+      wakeUp(uuid);
+      final ApiPrisoner previous = this.prisoners.remove(uuid);
+      this.dormantPrisoners.remove(uuid);
+      this.expiryIndex.remove(uuid);
+      if (previous != null) {
+        this.prisonerNames.remove(previous.name());
+      }
+
+      this.dirtyPrisoners.remove(uuid);
+      recordReloadChange(uuid);
+      this.prisonersVersion.incrementAndGet();
+    }
+  }
+
+  private void recordReloadChange(final UUID uuid) {
+    final Set<UUID> reloadChanges = this.reloadChanges;
+    if (reloadChanges != null) {
+      reloadChanges.add(uuid);
     }
   }
 
+  public CompletableFuture<Void> deletePrisonerFile(final ApiPrisoner prisoner) {
+    // storage keeps writes in order, a later save of the same prisoner can't be overtaken by this
+    return this.storage.deletePrisoner(prisoner).exceptionally(ex -> {
+      LOGGER.error("Could not delete prisoner {}/{}", prisoner.uuid(), prisoner.name(), ex);
+      return null;
+    });
+  }
+
   public boolean releaseJailedPlayer(final OfflinePlayer player, final UUID source, final @Nullable String sourceName, final boolean teleport) {
     final UUID prisonerUuid = player.getUniqueId();
-    final ApiPrisoner prisoner = this.prisoners.get(prisonerUuid);
+    final ApiPrisoner prisoner = lookup(prisonerUuid);
     if (prisoner == null) {
       return false;
     } else {
@@ -237,7 +606,30 @@ public final class PrisonerDataHandler {
     }
   }
 
-  public void releasePrisoner(
+  /**
+   * Releases many prisoners at once. Their groups are restored concurrently and the storage writes they cause are all
+   * issued in the same tick, which storage coalesces into a single batch.
+   *
+   * @return a future completed once every prisoner's groups were restored and their data written
+   */
+  public CompletableFuture<Void> releaseJailedPlayers(
+      final Collection<UUID> uuids,
+      final UUID source,
+      final @Nullable String sourceName,
+      final boolean teleport
+  ) {
+    final List<CompletableFuture<Void>> releases = new ArrayList<>(uuids.size());
+    for (final UUID uuid : uuids) {
+      final ApiPrisoner prisoner = lookup(uuid);
+      if (prisoner != null) {
+        releases.add(releasePrisoner(prisoner, this.server.getOfflinePlayer(uuid), source, sourceName, teleport));
+      }
+    }
+
+    return CompletableFuture.allOf(releases.toArray(new CompletableFuture<?>[0]));
+  }
+
+  public CompletableFuture<Void> releasePrisoner(
       ApiPrisoner prisoner,
       final OfflinePlayer player,
       final UUID source,
@@ -248,46 +640,49 @@ public final class PrisonerDataHandler {
 
     final PermissionInterface permissionInterface = this.plugin.permissionInterface();
     final Set<String> parentGroups = prisoner.parentGroups();
-    permissionInterface.setParentGroups(player, parentGroups, source, sourceName)
-        .whenComplete((ignored, ex) -> {
+    final CompletableFuture<Void> groupsFuture = permissionInterface.setParentGroups(player, parentGroups, source, sourceName)
+        .handle((ignored, ex) -> {
           if (ex != null && permissionInterface != PermissionInterface.NULL) {
             LOGGER.error("An error occurred setting back prisoner's parent groups for {} {}", prisonerUuid, parentGroups, ex);
           }
-        });
+
+          return (Void) null;
+        }).toCompletableFuture();
+    final CompletableFuture<Void> writeFuture;
 
     if (player.isOnline()) {
       // Player is online, we can teleport them out of jail right away and clear up all their data
       final Player online = Objects.requireNonNull(player.getPlayer());
       if (teleport) {
         final ImmutableLocation lastLocation = prisoner.lastLocationNullable();
-        final ImmutableLocation releaseLocation = prisoner.jail().releaseLocation();
+        final Location releaseLocation = ApiJail.mutableReleaseLocationOf(prisoner.jail());
         if (releaseLocation != null) {
-          Teleport.teleportAsync(online, releaseLocation.mutable());
+          Teleport.teleportAsync(online, releaseLocation);
         } else if (lastLocation != null) {
           Teleport.teleportAsync(online, lastLocation.mutable());
         }
       }
 
-      this.prisoners.remove(prisonerUuid);
-      deletePrisonerFile(prisoner);
+      removePrisoner(prisonerUuid);
+      writeFuture = deletePrisonerFile(prisoner);
 
       final SubCommandsConfiguration.SubCommands subCommands = this.subCommands.onRelease();
-      subCommands.executeAsPrisoner(this.server, online, prisoner.jailedBy() == null ? "" : prisoner.jailedBy());
-      subCommands.executeAsConsole(this.server, online, prisoner.jailedBy() == null ? "" : prisoner.jailedBy());
+      subCommands.executeAsPrisoner(this.plugin.subCommandDispatcher(), online, prisoner.jailedBy() == null ? "" : prisoner.jailedBy());
+      subCommands.executeAsConsole(this.plugin.subCommandDispatcher(), online, prisoner.jailedBy() == null ? "" : prisoner.jailedBy());
     } else {
       if (prisoner.released()) {
         // This player has already been released, don't need to do anything
-        return;
+        return groupsFuture;
       }
 
       if (prisoner.unknownLastLocation()) {
         // This prisoner has never joined during the entire duration of their sentence, meaning they are already where
         // they need to be, so we can immediately forget they exist.
-        this.prisoners.remove(prisonerUuid);
-        deletePrisonerFile(prisoner);
+        removePrisoner(prisonerUuid);
+        writeFuture = deletePrisonerFile(prisoner);
       } else {
         prisoner = prisoner.withReleased();
-        savePrisoner(prisoner).exceptionally(error -> {
+        writeFuture = savePrisoner(prisoner).exceptionally(error -> {
           LOGGER.error("An error occurred saving data for prisoner {}", prisonerUuid, error);
           return null;
         });
@@ -303,33 +698,211 @@ public final class PrisonerDataHandler {
     }
 
     this.plugin.eventBus().post(PrisonerReleaseEvent.class, prisoner);
+    return CompletableFuture.allOf(groupsFuture, writeFuture);
   }
 
+  /**
+   * Writes every prisoner that changed since it was last written. Prisoners whose time is running are always written,
+   * the seconds left stored for them go stale as time passes. Everyone else was already persisted when they changed and
+   * is skipped, and since their sentence is paused, they are also made dormant. Stored prisoners are skipped too, storage
+   * keeps when their time started running next to them.
+   */
   public CompletableFuture<Void> save() {
-    return this.storage.savePrisoners(this.prisoners);
+    final Map<UUID, ApiPrisoner> toWrite = new HashMap<>();
+    int skipped = this.dormantPrisoners.size() + storedPrisonerCount();
+
+    for (final ApiPrisoner prisoner : this.prisoners.values()) {
+      final UUID uuid = prisoner.uuid();
+      if (this.dirtyPrisoners.contains(uuid) || prisoner.expiry() instanceof SentenceExpiry.OfExpiryDate) {
+        toWrite.put(uuid, prisoner);
+      } else {
+        ++skipped;
+        hibernate(prisoner);
+      }
+    }
+
+    this.lastSaveSkippedPrisoners = skipped;
+    this.skippedPrisonerWrites.addAndGet(skipped);
+    LOGGER.debug("Saving {} prisoners, {} unchanged prisoners skipped", toWrite.size(), skipped);
+
+    if (toWrite.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return this.storage.savePrisoners(toWrite).thenRun(() -> toWrite.values().forEach(this::markClean));
+  }
+
+  /**
+   * How many unchanged prisoners the last {@link #save()} did not need to write.
+   */
+  public int lastSaveSkippedPrisoners() {
+    return this.lastSaveSkippedPrisoners;
+  }
+
+  /**
+   * How many prisoner writes were skipped by {@link #save()} in total since the plugin was enabled.
+   */
+  public long skippedPrisonerWrites() {
+    return this.skippedPrisonerWrites.get();
   }
 
   public void timer() {
-    final Iterator<Map.Entry<UUID, ApiPrisoner>> iterator = this.prisoners.entrySet().iterator();
-    while (iterator.hasNext()) {
-      final Map.Entry<UUID, ApiPrisoner> entry = iterator.next();
-      final UUID key = entry.getKey();
-      final ApiPrisoner prisoner = entry.getValue();
-      final boolean released = prisoner.released();
+    // Only prisoners whose deadline has passed are polled, the index already dropped them so anything that needs to be
+    // looked at again (e.g. offline prisoners being marked as released) is re-indexed when it's saved.
+    for (final UUID uuid : this.expiryIndex.pollExpired(Instant.now())) {
+      final ApiPrisoner prisoner = lookup(uuid);
+      if (prisoner == null) {
+        continue;
+      }
 
       // This prisoner has no known location, but they're also released. This means they're exactly where they need to
       // be once they join, and so we can forget they exist.
       if (prisoner.unknownLastLocation()) {
-        if (released) {
-          iterator.remove();
-          deletePrisonerFile(prisoner);
-        }
+        removePrisoner(uuid);
+        deletePrisonerFile(prisoner);
         continue;
       }
 
-      if (released) {
-        releaseJailedPlayer(this.server.getOfflinePlayer(key), Util.NIL_UUID, "timer", true);
+      releaseJailedPlayer(this.server.getOfflinePlayer(uuid), Util.NIL_UUID, "timer", true);
+    }
+  }
+
+  private final class Imprisonment {
+
+    final OfflinePlayer player;
+    final ApiPrisoner prisoner;
+    final boolean groupsUnknown;
+    final UUID jailer;
+    final @Nullable String jailerName;
+
+    Imprisonment(
+        final OfflinePlayer player,
+        final ApiPrisoner prisoner,
+        final boolean groupsUnknown,
+        final UUID jailer,
+        final @Nullable String jailerName
+    ) {
+      this.player = player;
+      this.prisoner = prisoner;
+      this.groupsUnknown = groupsUnknown;
+      this.jailer = jailer;
+      this.jailerName = jailerName;
+    }
+
+    /**
+     * Moves the player to the prisoner group if they weren't a prisoner already, errors are logged and swallowed.
+     */
+    CompletionStage<?> changeGroup() {
+      final PermissionInterface permissionInterface = PrisonerDataHandler.this.plugin.permissionInterface();
+      final CompletionStage<?> setGroupFuture = this.groupsUnknown
+          ? permissionInterface.setPrisonerGroup(this.player, this.jailer, this.jailerName)
+          : CompletableFuture.completedFuture(null);
+      return setGroupFuture.exceptionally(ex -> {
+        if (permissionInterface != PermissionInterface.NULL) {
+          LOGGER.error("An error occurred changing the prisoner group for {}", this.prisoner.uuid(), ex);
+        }
+
+        return null;
+      });
+    }
+  }
+
+  private static final class LoadedPrisoners {
+
+    final Map<UUID, ApiPrisoner> prisoners = new ConcurrentHashMap<>();
+    final Map<UUID, DormantPrisoner> dormantPrisoners = new ConcurrentHashMap<>();
+    final SentenceExpiryIndex expiryIndex = new SentenceExpiryIndex();
+    final NameIndex names = new NameIndex();
+
+    LoadedPrisoners(final Map<UUID, ApiPrisoner> prisoners) {
+      for (final ApiPrisoner prisoner : prisoners.values()) {
+        if (DormantPrisoner.canHibernate(prisoner)) {
+          this.dormantPrisoners.put(prisoner.uuid(), DormantPrisoner.of(prisoner));
+        } else {
+          this.prisoners.put(prisoner.uuid(), prisoner);
+        }
+
+        this.expiryIndex.schedule(prisoner);
+        this.names.add(prisoner.name());
+      }
+    }
+
+    @Nullable ApiPrisoner take(final UUID uuid) {
+      final ApiPrisoner prisoner = this.prisoners.remove(uuid);
+      final DormantPrisoner dormantPrisoner = this.dormantPrisoners.remove(uuid);
+      if (prisoner != null) {
+        return prisoner;
+      }
+
+      return dormantPrisoner == null ? null : dormantPrisoner.hydrate();
+    }
+  }
+
+  /**
+   * Unmodifiable view of a snapshot of every prisoner map, dormant and stored prisoners are decoded as they are
+   * iterated.
+   */
+  private static final class SnapshotCollection extends AbstractCollection<Prisoner> {
+
+    private final Map<UUID, ApiPrisoner> prisoners;
+    private final Map<UUID, DormantPrisoner> dormantPrisoners;
+    private final Map<UUID, ApiPrisoner> storedPrisoners;
+    private final int size;
+
+    SnapshotCollection(
+        final Map<UUID, ApiPrisoner> prisoners,
+        final Map<UUID, DormantPrisoner> dormantPrisoners,
+        final MappedPrisoners storedPrisoners,
+        final Set<UUID> takenStoredPrisoners
+    ) {
+      this.prisoners = prisoners;
+      this.dormantPrisoners = Maps.filterKeys(dormantPrisoners, uuid -> !prisoners.containsKey(uuid));
+      this.storedPrisoners = Maps.filterKeys(
+          storedPrisoners,
+          uuid -> !takenStoredPrisoners.contains(uuid) && !prisoners.containsKey(uuid) && !dormantPrisoners.containsKey(uuid)
+      );
+      // counted here from the in-memory maps, the filtered views would go over every stored prisoner on each size()
+      int size = prisoners.size() + storedPrisoners.size();
+      for (final UUID uuid : dormantPrisoners.keySet()) {
+        if (!prisoners.containsKey(uuid)) {
+          ++size;
+        }
+      }
+
+      for (final UUID uuid : Sets.union(takenStoredPrisoners, Sets.union(prisoners.keySet(), dormantPrisoners.keySet()))) {
+        if (storedPrisoners.containsKey(uuid)) {
+          --size;
+        }
       }
+
+      this.size = size;
+    }
+
+    @Override
+    public Iterator<Prisoner> iterator() {
+      return Iterators.unmodifiableIterator(Iterators.concat(
+          this.prisoners.values().iterator(),
+          Iterators.transform(this.dormantPrisoners.values().iterator(), DormantPrisoner::hydrate),
+          this.storedPrisoners.values().iterator()
+      ));
+    }
+
+    @Override
+    public int size() {
+      return this.size;
+    }
+  }
+
+  private static final class PrisonersSnapshot {
+
+    static final PrisonersSnapshot EMPTY = new PrisonersSnapshot(0L, ImmutableList.of());
+
+    final long version;
+    final Collection<Prisoner> prisoners;
+
+    PrisonersSnapshot(final long version, final Collection<Prisoner> prisoners) {
+      this.version = version;
+      this.prisoners = prisoners;
     }
   }
 }
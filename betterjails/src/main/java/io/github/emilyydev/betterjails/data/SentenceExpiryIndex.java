@@ -0,0 +1,156 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.data;
+
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.SentenceExpiry;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Keeps prisoners ordered by the instant their sentence is due, so the release timer only needs to look at the head of
+ * the index instead of every known prisoner.
+ * <p>
+ * Prisoners whose time is running ({@link SentenceExpiry.OfExpiryDate}) are indexed by their expiry date, prisoners
+ * whose time is paused but already ran out are due immediately, and prisoners whose time is paused with time left are
+ * not indexed at all, they get (re-)indexed once their time starts running again.
+ * <p>
+ * All operations are synchronized, the index is mostly touched from the main thread but prisoners can be saved from
+ * API consumers on other threads.
+ */
+final class SentenceExpiryIndex {
+
+  private static @Nullable Instant deadlineOf(final ApiPrisoner prisoner) {
+    final SentenceExpiry expiry = prisoner.expiry();
+    if (expiry instanceof SentenceExpiry.OfExpiryDate) {
+      return expiry.expiryDate();
+    } else if (prisoner.released()) {
+      return Instant.MIN;
+    } else {
+      return null;
+    }
+  }
+
+  private final NavigableSet<Deadline> deadlines = new TreeSet<>();
+  private final Map<UUID, Deadline> deadlinesByUuid = new HashMap<>();
+
+  synchronized void schedule(final ApiPrisoner prisoner) {
+    final UUID uuid = prisoner.uuid();
+    remove(uuid);
+
+    final Instant instant = deadlineOf(prisoner);
+    if (instant != null) {
+      final Deadline deadline = new Deadline(uuid, instant);
+      this.deadlines.add(deadline);
+      this.deadlinesByUuid.put(uuid, deadline);
+    }
+  }
+
+  /**
+   * Indexes a prisoner that was never decoded by its deadline, unless it has been indexed in the meantime.
+   */
+  synchronized void scheduleIfAbsent(final UUID uuid, final Instant instant) {
+    if (!this.deadlinesByUuid.containsKey(uuid)) {
+      final Deadline deadline = new Deadline(uuid, instant);
+      this.deadlines.add(deadline);
+      this.deadlinesByUuid.put(uuid, deadline);
+    }
+  }
+
+  synchronized void remove(final UUID uuid) {
+    final Deadline deadline = this.deadlinesByUuid.remove(uuid);
+    if (deadline != null) {
+      this.deadlines.remove(deadline);
+    }
+  }
+
+  synchronized int size() {
+    return this.deadlinesByUuid.size();
+  }
+
+  /**
+   * Removes from the index and returns every prisoner whose deadline is not after {@code now}, earliest first.
+   */
+  synchronized List<UUID> pollExpired(final Instant now) {
+    List<UUID> expired = null;
+    final Iterator<Deadline> iterator = this.deadlines.iterator();
+    while (iterator.hasNext()) {
+      final Deadline deadline = iterator.next();
+      if (deadline.instant.isAfter(now)) {
+        break;
+      }
+
+      iterator.remove();
+      this.deadlinesByUuid.remove(deadline.uuid);
+      if (expired == null) {
+        expired = new ArrayList<>();
+      }
+
+      expired.add(deadline.uuid);
+    }
+
+    return expired == null ? Collections.<UUID>emptyList() : expired;
+  }
+
+  private static final class Deadline implements Comparable<Deadline> {
+
+    private final UUID uuid;
+    private final Instant instant;
+
+    Deadline(final UUID uuid, final Instant instant) {
+      this.uuid = uuid;
+      this.instant = instant;
+    }
+
+    @Override
+    public int compareTo(final Deadline other) {
+      final int byInstant = this.instant.compareTo(other.instant);
+      return byInstant != 0 ? byInstant : this.uuid.compareTo(other.uuid);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) { return true; }
+      if (!(other instanceof Deadline)) { return false; }
+      final Deadline that = (Deadline) other;
+      return this.uuid.equals(that.uuid) && this.instant.equals(that.instant);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * this.uuid.hashCode() + this.instant.hashCode();
+    }
+  }
+}
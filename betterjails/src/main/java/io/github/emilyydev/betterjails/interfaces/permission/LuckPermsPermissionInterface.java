@@ -24,82 +24,87 @@
 
 package io.github.emilyydev.betterjails.interfaces.permission;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.github.emilyydev.betterjails.util.Util;
 import net.luckperms.api.LuckPerms;
 import net.luckperms.api.actionlog.Action;
-import net.luckperms.api.actionlog.ActionLogger;
 import net.luckperms.api.context.ImmutableContextSet;
 import net.luckperms.api.model.data.NodeMap;
 import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
 import net.luckperms.api.node.NodeType;
 import net.luckperms.api.node.types.InheritanceNode;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
 import java.util.Collection;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 final class LuckPermsPermissionInterface extends AbstractPermissionInterface {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger("BetterJails");
+
+  private static Set<String> parentGroups(final User user) {
+    return user.getNodes(NodeType.INHERITANCE)
+        .stream()
+        // see below TODO
+        .filter(node -> node.getContexts().isEmpty())
+        .map(InheritanceNode::getGroupName)
+        .collect(Util.toImmutableSet());
+  }
+
   private final LuckPerms luckPerms;
+  private final UserManager userManager;
   private final InheritanceNode prisonerGroupNode;
+  // offline users loaded to fetch their groups, so fetching their primary and parent groups separately loads them once
+  private final Cache<UUID, User> loadedUsers = CacheBuilder.newBuilder().expireAfterWrite(30L, TimeUnit.SECONDS).build();
 
   LuckPermsPermissionInterface(final Server server, final String prisonerGroup) {
     super(prisonerGroup);
     this.luckPerms = server.getServicesManager().load(LuckPerms.class);
+    this.userManager = this.luckPerms.getUserManager();
     this.prisonerGroupNode = InheritanceNode.builder(prisonerGroup).build();
   }
 
   @Override
   public void close() {
+    this.loadedUsers.invalidateAll();
   }
 
   @Override
   public CompletionStage<? extends String> fetchPrimaryGroup(final OfflinePlayer player) {
-    return this.luckPerms.getUserManager().loadUser(player.getUniqueId()).thenApply(User::getPrimaryGroup);
+    return loadUser(player.getUniqueId()).thenApply(User::getPrimaryGroup);
   }
 
   @Override
   public CompletionStage<? extends Set<? extends String>> fetchParentGroups(final OfflinePlayer player) {
-    return this.luckPerms.getUserManager().loadUser(player.getUniqueId()).thenApply(user ->
-        user.getNodes(NodeType.INHERITANCE)
-            .stream()
-            // see below TODO
-            .filter(node -> node.getContexts().isEmpty())
-            .map(InheritanceNode::getGroupName)
-            .collect(Util.toImmutableSet())
-    );
+    return loadUser(player.getUniqueId()).thenApply(LuckPermsPermissionInterface::parentGroups);
+  }
+
+  @Override
+  public CompletionStage<? extends PlayerGroups> fetchGroups(final OfflinePlayer player) {
+    return loadUser(player.getUniqueId()).thenApply(user -> new PlayerGroups(user.getPrimaryGroup(), parentGroups(user)));
   }
 
   @Override
   public CompletionStage<?> setPrisonerGroup(final OfflinePlayer player, final UUID source, final String sourceName) {
-    return this.luckPerms.getUserManager().modifyUser(player.getUniqueId(), user -> {
-          final NodeMap nodeMap = user.data();
-          // TODO consider non-contextual node removal? That renders a problem for later, as currently parent groups
-          //  are stored as-is, no context information, therefore it is lost when re-adding the nodes back.
-          //  Remove global nodes for now...
-          nodeMap.clear(ImmutableContextSet.empty(), NodeType.INHERITANCE::matches);
-          nodeMap.add(this.prisonerGroupNode);
-        })
-        .thenCompose(ignored -> {
-          final ActionLogger actionLogger = this.luckPerms.getActionLogger();
-          final Action.Builder builder = actionLogger.actionBuilder();
-          builder.source(source)
-              .sourceName(sourceName + " (BetterJails)")
-              .target(player.getUniqueId())
-              .targetType(Action.Target.Type.USER)
-              .timestamp(Instant.now())
-              .description("clear global parents & set " + prisonerGroup());
-          final String name = player.getName();
-          if (name != null) {
-            builder.targetName(name);
-          }
-
-          return actionLogger.submitToStorage(builder.build());
-        });
+    return modifyUser(player.getUniqueId(), user -> {
+      final NodeMap nodeMap = user.data();
+      // TODO consider non-contextual node removal? That renders a problem for later, as currently parent groups
+      //  are stored as-is, no context information, therefore it is lost when re-adding the nodes back.
+      //  Remove global nodes for now...
+      nodeMap.clear(ImmutableContextSet.empty(), NodeType.INHERITANCE::matches);
+      nodeMap.add(this.prisonerGroupNode);
+    }).thenRun(() -> logAction(player, source, sourceName, "clear global parents & set " + prisonerGroup()));
   }
 
   @Override
@@ -109,34 +114,71 @@ final class LuckPermsPermissionInterface extends AbstractPermissionInterface {
       final UUID source,
       final String sourceName
   ) {
-    return this.luckPerms.getUserManager().modifyUser(player.getUniqueId(), user -> {
-          final NodeMap nodeMap = user.data();
-          nodeMap.remove(this.prisonerGroupNode);
-          parentGroups.stream()
-              .map(InheritanceNode::builder)
-              .map(InheritanceNode.Builder::build)
-              .forEach(nodeMap::add);
-        })
-        .thenCompose(ignored -> {
-          final ActionLogger actionLogger = this.luckPerms.getActionLogger();
-          final Action.Builder builder = actionLogger.actionBuilder();
-          builder.source(source)
-              .sourceName(sourceName + " (BetterJails)")
-              .target(player.getUniqueId())
-              .targetType(Action.Target.Type.USER)
-              .timestamp(Instant.now())
-              .description("remove " + prisonerGroup() + " & re-add " + String.join(", ", parentGroups));
-          final String name = player.getName();
-          if (name != null) {
-            builder.targetName(name);
-          }
-
-          return actionLogger.submitToStorage(builder.build());
-        });
+    return modifyUser(player.getUniqueId(), user -> {
+      final NodeMap nodeMap = user.data();
+      nodeMap.remove(this.prisonerGroupNode);
+      parentGroups.stream()
+          .map(InheritanceNode::builder)
+          .map(InheritanceNode.Builder::build)
+          .forEach(nodeMap::add);
+    }).thenRun(() -> logAction(player, source, sourceName, "remove " + prisonerGroup() + " & re-add " + String.join(", ", parentGroups)));
   }
 
   @Override
   public String name() {
     return "LuckPerms";
   }
+
+  private CompletableFuture<User> loadUser(final UUID uuid) {
+    // LuckPerms always keeps online players loaded
+    final User onlineUser = this.userManager.getUser(uuid);
+    if (onlineUser != null) {
+      return CompletableFuture.completedFuture(onlineUser);
+    }
+
+    final User cachedUser = this.loadedUsers.getIfPresent(uuid);
+    if (cachedUser != null) {
+      return CompletableFuture.completedFuture(cachedUser);
+    }
+
+    return this.userManager.loadUser(uuid).thenApply(user -> {
+      this.loadedUsers.put(uuid, user);
+      return user;
+    });
+  }
+
+  /**
+   * Modifies and saves a user. Offline users are always loaded again for this, a user cached to fetch their groups may
+   * be missing changes made since, which saving it would overwrite.
+   */
+  private CompletableFuture<Void> modifyUser(final UUID uuid, final Consumer<? super User> action) {
+    this.loadedUsers.invalidate(uuid);
+    final User user = this.userManager.getUser(uuid);
+    if (user == null) {
+      return this.userManager.modifyUser(uuid, action);
+    }
+
+    action.accept(user);
+    return this.userManager.saveUser(user);
+  }
+
+  private void logAction(final OfflinePlayer player, final UUID source, final String sourceName, final String description) {
+    final Action.Builder builder = this.luckPerms.getActionLogger().actionBuilder();
+    builder.source(source)
+        .sourceName(sourceName + " (BetterJails)")
+        .target(player.getUniqueId())
+        .targetType(Action.Target.Type.USER)
+        .timestamp(Instant.now())
+        .description(description);
+    final String name = player.getName();
+    if (name != null) {
+      builder.targetName(name);
+    }
+
+    // LuckPerms writes the entry in the background, there is no way to submit several at once
+    this.luckPerms.getActionLogger().submitToStorage(builder.build()).exceptionally(ex -> {
+      LOGGER.error("Could not submit an entry to the LuckPerms action log", ex);
+      return null;
+    });
+  }
 }
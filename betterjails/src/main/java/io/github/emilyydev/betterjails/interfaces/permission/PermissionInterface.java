@@ -24,15 +24,19 @@
 
 package io.github.emilyydev.betterjails.interfaces.permission;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import io.github.emilyydev.betterjails.BetterJailsPlugin;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.plugin.PluginManager;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
 public interface PermissionInterface extends AutoCloseable {
 
@@ -94,10 +98,29 @@ public interface PermissionInterface extends AutoCloseable {
 
   void close();
 
+  /**
+   * Human readable statistics about how this interface is performing, if it keeps any.
+   */
+  default List<String> statistics() {
+    return ImmutableList.of();
+  }
+
   CompletionStage<? extends String> fetchPrimaryGroup(OfflinePlayer player);
 
   CompletionStage<? extends Set<? extends String>> fetchParentGroups(OfflinePlayer player);
 
+  /**
+   * Fetches both the primary group and the parent groups of a player, implementations may do so with a single lookup.
+   * Groups that can't be fetched are left empty.
+   */
+  default CompletionStage<? extends PlayerGroups> fetchGroups(final OfflinePlayer player) {
+    final CompletionStage<? extends String> primaryGroupFuture = fetchPrimaryGroup(player).exceptionally(ex -> null);
+    final CompletionStage<? extends Set<? extends String>> parentGroupsFuture = fetchParentGroups(player)
+        .thenApply(Function.<Set<? extends String>>identity())
+        .exceptionally(ex -> ImmutableSet.of());
+    return primaryGroupFuture.thenCombine(parentGroupsFuture, PlayerGroups::new);
+  }
+
   CompletionStage<?> setPrisonerGroup(OfflinePlayer player, UUID source, String sourceName);
 
   CompletionStage<?> setParentGroups(OfflinePlayer player, Collection<? extends String> parentGroups, UUID source, String sourceName);
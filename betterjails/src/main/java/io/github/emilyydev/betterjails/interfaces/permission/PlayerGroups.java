@@ -0,0 +1,55 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.interfaces.permission;
+
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * A player's primary group and parent groups, as known by the permission plugin.
+ */
+public final class PlayerGroups {
+
+  public static final PlayerGroups NONE = new PlayerGroups(null, ImmutableSet.of());
+
+  private final @Nullable String primaryGroup;
+  private final Set<String> parentGroups;
+
+  public PlayerGroups(final @Nullable String primaryGroup, final Collection<? extends String> parentGroups) {
+    this.primaryGroup = primaryGroup;
+    this.parentGroups = ImmutableSet.copyOf(parentGroups);
+  }
+
+  public @Nullable String primaryGroup() {
+    return this.primaryGroup;
+  }
+
+  public Set<String> parentGroups() {
+    return this.parentGroups;
+  }
+}
@@ -24,29 +24,66 @@
 
 package io.github.emilyydev.betterjails.interfaces.permission;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.util.LatencyHistogram;
 import net.milkbowl.vault.permission.Permission;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.server.ServiceRegisterEvent;
 import org.bukkit.plugin.RegisteredServiceProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
+/**
+ * Vault calls block, and for offline players most backends go to their database. Those are run on a small pool of
+ * worker threads instead. Most backends and Bukkit's permission attachments aren't thread safe for online players, but
+ * their data is already loaded, so operations on online players run on the main thread. Either way, operations run one
+ * at a time per player so they apply in the order they were requested.
+ */
 final class VaultPermissionInterface extends AbstractPermissionInterface implements Listener {
 
-  private static <T> CompletionStage<? extends T> completed(final T value) {
-    return CompletableFuture.completedFuture(value);
-  }
+  private static final Logger LOGGER = LoggerFactory.getLogger("BetterJails");
+
+  private static final int WORKER_THREADS = 2;
+  private static final int MAX_QUEUED_OPERATIONS = 1024;
+  private static final long OPERATION_TIMEOUT_SECONDS = 10L;
+  private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
 
-  private Permission permission;
+  private volatile Permission permission;
+  private final ThreadPoolExecutor workers;
+  // runs right away if already on the main thread
+  private final Executor mainThread;
+  // times out operations that take too long, the operation itself can't be interrupted
+  private final ScheduledExecutorService timeouts;
+  // last operation queued for each player, guarded by itself
+  private final Map<UUID, CompletableFuture<?>> lastOperations = new HashMap<>();
+  private final LatencyHistogram fetchLatency = new LatencyHistogram();
+  private final LatencyHistogram setPrisonerGroupLatency = new LatencyHistogram();
+  private final LatencyHistogram setParentGroupsLatency = new LatencyHistogram();
 
   VaultPermissionInterface(final BetterJailsPlugin plugin) {
     super(plugin.configuration().prisonerPermissionGroup().orElseThrow(NoSuchElementException::new));
@@ -55,6 +92,33 @@ final class VaultPermissionInterface extends AbstractPermissionInterface impleme
         ServiceRegisterEvent.class, this, EventPriority.MONITOR,
         (l, e) -> onPermissionServiceRegistered((ServiceRegisterEvent) e), plugin
     );
+
+    final AtomicInteger threadCount = new AtomicInteger();
+    // when full, whoever asked runs the operation themselves, like it used to be
+    this.workers = new ThreadPoolExecutor(
+        WORKER_THREADS, WORKER_THREADS, 30L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(MAX_QUEUED_OPERATIONS),
+        task -> {
+          final Thread thread = new Thread(task, "BetterJails Vault Thread #" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.CallerRunsPolicy()
+    );
+    this.workers.allowCoreThreadTimeOut(true);
+    final Server server = plugin.getServer();
+    this.mainThread = task -> {
+      if (server.isPrimaryThread()) {
+        task.run();
+      } else {
+        plugin.execute(task);
+      }
+    };
+    this.timeouts = Executors.newSingleThreadScheduledExecutor(task -> {
+      final Thread thread = new Thread(task, "BetterJails Vault Timeouts");
+      thread.setDaemon(true);
+      return thread;
+    });
   }
 
   private void onPermissionServiceRegistered(final ServiceRegisterEvent event) {
@@ -67,23 +131,48 @@ final class VaultPermissionInterface extends AbstractPermissionInterface impleme
   @Override
   public void close() {
     ServiceRegisterEvent.getHandlerList().unregister(this);
+    // let whatever is queued finish, those are group changes that have to be applied
+    this.workers.shutdown();
+    try {
+      if (!this.workers.awaitTermination(OPERATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        this.workers.shutdownNow();
+      }
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+
+    this.timeouts.shutdownNow();
   }
 
   @Override
   public CompletionStage<? extends String> fetchPrimaryGroup(final OfflinePlayer player) {
-    return completed(this.permission.getPrimaryGroup(null, player));
+    return submit(player, this.fetchLatency, () -> this.permission.getPrimaryGroup(null, player));
   }
 
   @Override
   public CompletionStage<? extends Set<? extends String>> fetchParentGroups(final OfflinePlayer player) {
-    return completed(ImmutableSet.copyOf(this.permission.getPlayerGroups(null, player)));
+    return submit(player, this.fetchLatency, () -> ImmutableSet.copyOf(this.permission.getPlayerGroups(null, player)));
+  }
+
+  @Override
+  public CompletionStage<? extends PlayerGroups> fetchGroups(final OfflinePlayer player) {
+    return submit(player, this.fetchLatency, () -> {
+      final Permission permission = this.permission;
+      return new PlayerGroups(permission.getPrimaryGroup(null, player), ImmutableSet.copyOf(permission.getPlayerGroups(null, player)));
+    });
   }
 
   @Override
   public CompletionStage<?> setPrisonerGroup(final OfflinePlayer player, final UUID source, final String sourceName) {
-    return fetchParentGroups(player).thenAccept(parentGroups -> {
-      this.permission.playerAddGroup(null, player, prisonerGroup());
-      parentGroups.forEach(group -> this.permission.playerRemoveGroup(null, player, group));
+    return submit(player, this.setPrisonerGroupLatency, () -> {
+      final Permission permission = this.permission;
+      final String[] parentGroups = permission.getPlayerGroups(null, player);
+      permission.playerAddGroup(null, player, prisonerGroup());
+      for (final String group : parentGroups) {
+        permission.playerRemoveGroup(null, player, group);
+      }
+
+      return null;
     });
   }
 
@@ -94,13 +183,74 @@ final class VaultPermissionInterface extends AbstractPermissionInterface impleme
       final UUID source,
       final String sourceName
   ) {
-    parentGroups.forEach(group -> this.permission.playerAddGroup(null, player, group));
-    this.permission.playerRemoveGroup(null, player, prisonerGroup());
-    return completed(null);
+    final List<String> groups = ImmutableList.copyOf(parentGroups);
+    return submit(player, this.setParentGroupsLatency, () -> {
+      final Permission permission = this.permission;
+      groups.forEach(group -> permission.playerAddGroup(null, player, group));
+      permission.playerRemoveGroup(null, player, prisonerGroup());
+      return null;
+    });
   }
 
   @Override
   public String name() {
     return "Vault (" + this.permission.getName() + ')';
   }
+
+  @Override
+  public List<String> statistics() {
+    return ImmutableList.of(
+        "Group fetches: " + this.fetchLatency.report(),
+        "Prisoner group changes: " + this.setPrisonerGroupLatency.report(),
+        "Parent group changes: " + this.setParentGroupsLatency.report()
+    );
+  }
+
+  /**
+   * Runs the operation once every operation queued before it for the same player is done, on the main thread if the
+   * player is online and on a worker thread otherwise. The returned future fails with a {@link TimeoutException} if it
+   * takes too long, the operation itself still runs to completion and is logged when it does.
+   */
+  private <T> CompletableFuture<T> submit(final OfflinePlayer player, final LatencyHistogram latency, final Supplier<T> operation) {
+    final UUID uuid = player.getUniqueId();
+    final Executor executor = player.isOnline() ? this.mainThread : this.workers;
+    final CompletableFuture<T> future;
+    synchronized (this.lastOperations) {
+      final CompletableFuture<?> previous = this.lastOperations.getOrDefault(uuid, DONE);
+      future = previous.handle((v, ex) -> null).thenApplyAsync(ignored -> {
+        final long start = System.nanoTime();
+        try {
+          return operation.get();
+        } finally {
+          latency.record(System.nanoTime() - start);
+        }
+      }, executor);
+      this.lastOperations.put(uuid, future);
+    }
+
+    future.whenComplete((v, ex) -> {
+      synchronized (this.lastOperations) {
+        this.lastOperations.remove(uuid, future);
+      }
+    });
+
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    final ScheduledFuture<?> timeout = this.timeouts.schedule(
+        () -> result.completeExceptionally(new TimeoutException("Vault operation for " + uuid + " timed out")),
+        OPERATION_TIMEOUT_SECONDS, TimeUnit.SECONDS
+    );
+    future.whenComplete((value, ex) -> {
+      timeout.cancel(false);
+      // whoever was waiting for it already moved on, the player's groups may not be what they expect
+      if (ex == null) {
+        if (!result.complete(value)) {
+          LOGGER.warn("Vault operation for {} finished after it timed out", uuid);
+        }
+      } else if (!result.completeExceptionally(ex)) {
+        LOGGER.error("Vault operation for {} failed after it timed out", uuid, ex);
+      }
+    });
+
+    return result;
+  }
 }
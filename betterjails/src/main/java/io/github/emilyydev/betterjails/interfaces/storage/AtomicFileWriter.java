@@ -0,0 +1,202 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.interfaces.storage;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces files by writing their new contents to a temporary file next to them and renaming it over the old file, so
+ * a crash mid-write leaves either the old or the new contents behind, never a truncated file.
+ * <p>
+ * How the files are flushed to disk depends on the {@link SyncPolicy}. With {@link SyncPolicy#BATCH}, every temporary
+ * file of a batch is written before any of them is flushed and each directory is synced once after all renames instead
+ * of once per file. Each file still costs a flush of its own, so a batch of many files is not much cheaper than
+ * {@link SyncPolicy#ALWAYS}.
+ */
+final class AtomicFileWriter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("BetterJails");
+
+  static final String TEMP_SUFFIX = ".tmp";
+  // batches are committed in groups of this many files, each holds a file open until it's flushed
+  private static final int MAX_OPEN_FILES = 256;
+
+  private final SyncPolicy syncPolicy;
+
+  AtomicFileWriter(final SyncPolicy syncPolicy) {
+    this.syncPolicy = syncPolicy;
+  }
+
+  void write(final Path file, final byte[] contents) throws IOException {
+    writeAll(Collections.singletonMap(file, contents));
+  }
+
+  /**
+   * Replaces every file with its new contents. A file that fails to be written doesn't stop the others, the first
+   * failure is thrown once they're all done with the rest suppressed.
+   */
+  void writeAll(final Map<Path, byte[]> files) throws IOException {
+    IOException failure = null;
+    final List<PendingFile> pending = new ArrayList<>(Math.min(files.size(), MAX_OPEN_FILES));
+    final Set<Path> directories = new LinkedHashSet<>();
+    for (final Map.Entry<Path, byte[]> file : files.entrySet()) {
+      try {
+        pending.add(stage(file.getKey(), file.getValue()));
+      } catch (final IOException ex) {
+        failure = addFailure(failure, ex);
+      }
+
+      if (this.syncPolicy != SyncPolicy.BATCH || pending.size() == MAX_OPEN_FILES) {
+        failure = commit(pending, directories, failure);
+      }
+    }
+
+    failure = commit(pending, directories, failure);
+    if (this.syncPolicy == SyncPolicy.BATCH) {
+      directories.forEach(AtomicFileWriter::syncDirectory);
+    }
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static PendingFile stage(final Path file, final byte[] contents) throws IOException {
+    final Path tempFile = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+    final FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      final ByteBuffer buffer = ByteBuffer.wrap(contents);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (final IOException ex) {
+      channel.close();
+      Files.deleteIfExists(tempFile);
+      throw ex;
+    }
+
+    return new PendingFile(file, tempFile, channel);
+  }
+
+  /**
+   * Flushes and closes every pending file, then renames them over the files they replace.
+   */
+  private @Nullable IOException commit(
+      final List<PendingFile> pending,
+      final Set<Path> directories,
+      final @Nullable IOException previousFailure
+  ) {
+    IOException failure = previousFailure;
+    final List<PendingFile> flushed = new ArrayList<>(pending.size());
+    for (final PendingFile file : pending) {
+      try (final FileChannel channel = file.channel) {
+        if (this.syncPolicy != SyncPolicy.NEVER) {
+          channel.force(true);
+        }
+
+        flushed.add(file);
+      } catch (final IOException ex) {
+        failure = addFailure(failure, ex);
+        deleteQuietly(file.tempFile);
+      }
+    }
+
+    for (final PendingFile file : flushed) {
+      try {
+        Files.move(file.tempFile, file.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        directories.add(file.file.toAbsolutePath().getParent());
+      } catch (final IOException ex) {
+        failure = addFailure(failure, ex);
+        deleteQuietly(file.tempFile);
+      }
+    }
+
+    pending.clear();
+    if (this.syncPolicy == SyncPolicy.ALWAYS) {
+      directories.forEach(AtomicFileWriter::syncDirectory);
+      directories.clear();
+    }
+
+    return failure;
+  }
+
+  /**
+   * Makes renames in the directory durable. Not every platform allows opening directories (e.g. Windows), where this
+   * does nothing.
+   */
+  static void syncDirectory(final Path directory) {
+    try (final FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (final IOException ex) {
+      LOGGER.debug("Could not sync directory {}", directory, ex);
+    }
+  }
+
+  private static void deleteQuietly(final Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (final IOException ex) {
+      LOGGER.debug("Could not delete temporary file {}", file, ex);
+    }
+  }
+
+  private static IOException addFailure(final @Nullable IOException failure, final IOException ex) {
+    if (failure == null) {
+      return ex;
+    }
+
+    failure.addSuppressed(ex);
+    return failure;
+  }
+
+  private static final class PendingFile {
+
+    final Path file;
+    final Path tempFile;
+    final FileChannel channel;
+
+    PendingFile(final Path file, final Path tempFile, final FileChannel channel) {
+      this.file = file;
+      this.tempFile = tempFile;
+      this.channel = channel;
+    }
+  }
+}
@@ -0,0 +1,515 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.interfaces.storage;
+
+import com.github.fefo.betterjails.api.model.jail.Jail;
+import com.github.fefo.betterjails.api.util.ImmutableLocation;
+import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.api.impl.model.jail.ApiJail;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import io.github.emilyydev.betterjails.data.upgrade.DataUpgrader;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of prisoners and jails that any storage backend can use.
+ * <p>
+ * A block starts with a header holding the kind of records it contains, the version of this encoding and the
+ * {@link DataUpgrader} data version the records were written with. Strings that repeat across records (jail, world,
+ * group and jailer names) are written once into a table that follows the header and referenced by index. Integers are
+ * written as varints and unique ids as 16 fixed bytes.
+ */
+public final class BinaryCodec {
+
+  private static final byte PRISONERS_KIND = 'P';
+  private static final byte JAILS_KIND = 'J';
+  private static final int FORMAT_VERSION = 1;
+
+  public static byte[] encodePrisoner(final ApiPrisoner prisoner) {
+    return encodePrisoners(Collections.singletonList(prisoner));
+  }
+
+  public static byte[] encodePrisoners(final Collection<? extends ApiPrisoner> prisoners) {
+    final List<StoredPrisoner> storedPrisoners = new ArrayList<>(prisoners.size());
+    for (final ApiPrisoner prisoner : prisoners) {
+      storedPrisoners.add(StoredPrisoner.of(prisoner));
+    }
+
+    return encodeStoredPrisoners(storedPrisoners);
+  }
+
+  /**
+   * Decodes every prisoner in the block, jails must already be loaded.
+   */
+  public static Map<UUID, ApiPrisoner> decodePrisoners(final byte[] bytes, final BetterJailsPlugin plugin) throws IOException {
+    final List<StoredPrisoner> storedPrisoners = decodeStoredPrisoners(bytes);
+    final Map<UUID, ApiPrisoner> out = new HashMap<>(storedPrisoners.size());
+    for (final StoredPrisoner storedPrisoner : storedPrisoners) {
+      out.put(storedPrisoner.uuid, storedPrisoner.toPrisoner(plugin));
+    }
+
+    return out;
+  }
+
+  /**
+   * Decodes a record written by {@link #encodePrisoner(ApiPrisoner)} into a prisoner whose sentence is paused, in the
+   * given jail rather than looking it up by name. The location is used in place of their last location if it is unknown.
+   */
+  public static ApiPrisoner decodePausedPrisoner(final byte[] record, final Jail jail, final @Nullable ImmutableLocation unknownLocation) throws IOException {
+    return decodeStoredPrisoners(record).get(0).toPausedPrisoner(jail, unknownLocation);
+  }
+
+  public static byte[] encodeJails(final Collection<? extends Jail> jails) {
+    final Output body = new Output(jails.size() * 64);
+    final StringTable strings = new StringTable();
+    body.writeVarLong(jails.size());
+    for (final Jail jail : jails) {
+      body.writeString(jail.name().toLowerCase(Locale.ROOT));
+      writeLocation(body, strings, jail.location());
+      writeLocation(body, strings, jail.releaseLocation());
+    }
+
+    return assemble(JAILS_KIND, DataUpgrader.JAILS_VERSION, strings, body);
+  }
+
+  public static Map<String, Jail> decodeJails(final byte[] bytes) throws IOException {
+    final Input in = new Input(bytes, 0, bytes.length);
+    readHeader(in, JAILS_KIND, DataUpgrader.JAILS_VERSION);
+    final String[] strings = readStringTable(in);
+    final int count = in.readCount();
+    final Map<String, Jail> out = new LinkedHashMap<>(count);
+    for (int i = 0; i < count; ++i) {
+      final String name = in.readString();
+      final ImmutableLocation location = readLocation(in, strings);
+      if (location == null) {
+        throw new IOException("Jail " + name + " has no location");
+      }
+
+      out.put(name, new ApiJail(name, location, readLocation(in, strings)));
+    }
+
+    return out;
+  }
+
+  static byte[] encodeStoredPrisoners(final Collection<StoredPrisoner> prisoners) {
+    final Output body = new Output(prisoners.size() * 96);
+    final StringTable strings = new StringTable();
+    body.writeVarLong(prisoners.size());
+    for (final StoredPrisoner prisoner : prisoners) {
+      body.writeLong(prisoner.uuid.getMostSignificantBits());
+      body.writeLong(prisoner.uuid.getLeastSignificantBits());
+      body.writeNullableString(prisoner.name);
+      body.writeVarLong(strings.ref(prisoner.jailName));
+      body.writeVarLong(strings.ref(prisoner.jailedBy));
+      body.writeSignedVarLong(prisoner.secondsLeft);
+      body.writeSignedVarLong(prisoner.totalSentenceSeconds);
+      body.writeNullableString(prisoner.reason);
+      writeLocation(body, strings, prisoner.lastLocation);
+      body.writeVarLong(strings.ref(prisoner.primaryGroup));
+      body.writeVarLong(prisoner.parentGroups.size());
+      for (final String group : prisoner.parentGroups) {
+        body.writeVarLong(strings.ref(group));
+      }
+    }
+
+    return assemble(PRISONERS_KIND, DataUpgrader.PRISONER_VERSION, strings, body);
+  }
+
+  static List<StoredPrisoner> decodeStoredPrisoners(final byte[] bytes) throws IOException {
+    final Input in = new Input(bytes, 0, bytes.length);
+    readHeader(in, PRISONERS_KIND, DataUpgrader.PRISONER_VERSION);
+    final String[] strings = readStringTable(in);
+    final int count = in.readCount();
+    final List<StoredPrisoner> out = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      final UUID uuid = new UUID(in.readLong(), in.readLong());
+      final String name = in.readNullableString();
+      final String jailName = readRef(in, strings);
+      if (jailName == null) {
+        throw new IOException("Prisoner " + uuid + " has no jail");
+      }
+
+      final String jailedBy = readRef(in, strings);
+      final long secondsLeft = in.readSignedVarLong();
+      final long totalSentenceSeconds = in.readSignedVarLong();
+      final String reason = in.readNullableString();
+      final ImmutableLocation lastLocation = readLocation(in, strings);
+      final String primaryGroup = readRef(in, strings);
+      final int parentGroupCount = in.readCount();
+      final List<String> parentGroups = new ArrayList<>(parentGroupCount);
+      for (int j = 0; j < parentGroupCount; ++j) {
+        final String group = readRef(in, strings);
+        if (group != null) {
+          parentGroups.add(group);
+        }
+      }
+
+      out.add(new StoredPrisoner(uuid, name, jailName, jailedBy, secondsLeft, totalSentenceSeconds, reason, lastLocation, primaryGroup, parentGroups));
+    }
+
+    return out;
+  }
+
+  /**
+   * The unique id of the first prisoner in the block, without decoding the rest of it.
+   */
+  static UUID firstPrisonerUuid(final byte[] bytes, final int offset, final int length) throws IOException {
+    final Input in = firstPrisoner(bytes, offset, length);
+    return new UUID(in.readLong(), in.readLong());
+  }
+
+  /**
+   * The name of the first prisoner in the block, without decoding the rest of it.
+   */
+  static @Nullable String firstPrisonerName(final byte[] bytes, final int offset, final int length) throws IOException {
+    final Input in = firstPrisoner(bytes, offset, length);
+    in.skip(Long.BYTES * 2);
+    return in.readNullableString();
+  }
+
+  /**
+   * Positions the returned input at the first prisoner of the block, skipping over the string table.
+   */
+  private static Input firstPrisoner(final byte[] bytes, final int offset, final int length) throws IOException {
+    final Input in = new Input(bytes, offset, length);
+    readHeader(in, PRISONERS_KIND, DataUpgrader.PRISONER_VERSION);
+    final int stringCount = in.readCount();
+    for (int i = 0; i < stringCount; ++i) {
+      in.skip(in.readCount());
+    }
+
+    if (in.readCount() == 0) {
+      throw new IOException("Empty prisoner block");
+    }
+
+    return in;
+  }
+
+  private static byte[] assemble(final byte kind, final int dataVersion, final StringTable strings, final Output body) {
+    final Output out = new Output(body.size + strings.size() * 16 + 8);
+    out.writeByte(kind);
+    out.writeVarLong(FORMAT_VERSION);
+    out.writeVarLong(dataVersion);
+    out.writeVarLong(strings.size());
+    for (final String string : strings.strings()) {
+      out.writeString(string);
+    }
+
+    out.write(body.bytes, 0, body.size);
+    return out.toByteArray();
+  }
+
+  private static void readHeader(final Input in, final byte expectedKind, final int currentDataVersion) throws IOException {
+    final byte kind = in.readByte();
+    if (kind != expectedKind) {
+      throw new IOException("Expected a block of type " + (char) expectedKind + " but found " + (char) kind);
+    }
+
+    final long formatVersion = in.readVarLong();
+    if (formatVersion > FORMAT_VERSION) {
+      throw new IOException("Binary data is from a newer version of BetterJails, consider updating BetterJails");
+    }
+
+    // the binary format was introduced at the current data versions. When DataUpgrader bumps them, blocks written with
+    // older versions have to be decoded the way they were laid out and run through the upgraders since
+    final long dataVersion = in.readVarLong();
+    if (dataVersion > currentDataVersion) {
+      throw new IOException("Binary data is from a newer version of BetterJails, consider updating BetterJails");
+    } else if (dataVersion < currentDataVersion) {
+      throw new IOException("Unsupported data version " + dataVersion + ", expected " + currentDataVersion);
+    }
+  }
+
+  private static String[] readStringTable(final Input in) throws IOException {
+    final String[] strings = new String[in.readCount()];
+    for (int i = 0; i < strings.length; ++i) {
+      strings[i] = in.readString();
+    }
+
+    return strings;
+  }
+
+  private static @Nullable String readRef(final Input in, final String[] strings) throws IOException {
+    final long ref = in.readVarLong();
+    if (ref == 0L) {
+      return null;
+    } else if (ref > strings.length) {
+      throw new IOException("String reference " + ref + " out of bounds");
+    }
+
+    return strings[(int) ref - 1];
+  }
+
+  private static void writeLocation(final Output out, final StringTable strings, final @Nullable ImmutableLocation location) {
+    if (location == null) {
+      out.writeVarLong(0L);
+      return;
+    }
+
+    out.writeVarLong(strings.ref(location.getWorldName()));
+    out.writeLong(Double.doubleToRawLongBits(location.getX()));
+    out.writeLong(Double.doubleToRawLongBits(location.getY()));
+    out.writeLong(Double.doubleToRawLongBits(location.getZ()));
+    out.writeInt(Float.floatToRawIntBits(location.getYaw()));
+    out.writeInt(Float.floatToRawIntBits(location.getPitch()));
+  }
+
+  private static @Nullable ImmutableLocation readLocation(final Input in, final String[] strings) throws IOException {
+    final String worldName = readRef(in, strings);
+    if (worldName == null) {
+      return null;
+    }
+
+    final Map<String, Object> serializedLocation = new HashMap<>(8);
+    serializedLocation.put("world", worldName);
+    serializedLocation.put("x", Double.longBitsToDouble(in.readLong()));
+    serializedLocation.put("y", Double.longBitsToDouble(in.readLong()));
+    serializedLocation.put("z", Double.longBitsToDouble(in.readLong()));
+    serializedLocation.put("yaw", Float.intBitsToFloat(in.readInt()));
+    serializedLocation.put("pitch", Float.intBitsToFloat(in.readInt()));
+    return ImmutableLocation.deserialize(serializedLocation);
+  }
+
+  private BinaryCodec() {
+  }
+
+  /**
+   * Assigns every distinct string an index starting at 1, 0 stands for {@code null}.
+   */
+  private static final class StringTable {
+
+    private final Map<String, Integer> indices = new LinkedHashMap<>();
+
+    long ref(final @Nullable String string) {
+      if (string == null) {
+        return 0L;
+      }
+
+      Integer index = this.indices.get(string);
+      if (index == null) {
+        index = this.indices.size() + 1;
+        this.indices.put(string, index);
+      }
+
+      return index;
+    }
+
+    int size() {
+      return this.indices.size();
+    }
+
+    Collection<String> strings() {
+      return this.indices.keySet();
+    }
+  }
+
+  private static final class Output {
+
+    byte[] bytes;
+    int size = 0;
+
+    Output(final int initialCapacity) {
+      this.bytes = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    private void ensureCapacity(final int extra) {
+      if (this.size + extra > this.bytes.length) {
+        this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.size + extra));
+      }
+    }
+
+    void writeByte(final int value) {
+      ensureCapacity(1);
+      this.bytes[this.size++] = (byte) value;
+    }
+
+    void write(final byte[] bytes, final int offset, final int length) {
+      ensureCapacity(length);
+      System.arraycopy(bytes, offset, this.bytes, this.size, length);
+      this.size += length;
+    }
+
+    void writeInt(final int value) {
+      ensureCapacity(Integer.BYTES);
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        this.bytes[this.size++] = (byte) (value >>> shift);
+      }
+    }
+
+    void writeLong(final long value) {
+      ensureCapacity(Long.BYTES);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        this.bytes[this.size++] = (byte) (value >>> shift);
+      }
+    }
+
+    void writeVarLong(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0L) {
+        this.bytes[this.size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+
+      this.bytes[this.size++] = (byte) value;
+    }
+
+    void writeSignedVarLong(final long value) {
+      // zigzag, small negative values stay small
+      writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeString(final String value) {
+      final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+      writeVarLong(utf8.length);
+      write(utf8, 0, utf8.length);
+    }
+
+    void writeNullableString(final @Nullable String value) {
+      if (value == null) {
+        writeVarLong(0L);
+      } else {
+        final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(utf8.length + 1L);
+        write(utf8, 0, utf8.length);
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(this.bytes, this.size);
+    }
+  }
+
+  private static final class Input {
+
+    private final byte[] bytes;
+    private final int limit;
+    private int position;
+
+    Input(final byte[] bytes, final int offset, final int length) {
+      this.bytes = bytes;
+      this.position = offset;
+      this.limit = offset + length;
+    }
+
+    private void require(final int count) throws EOFException {
+      if (count < 0 || this.limit - this.position < count) {
+        throw new EOFException("Truncated binary data");
+      }
+    }
+
+    void skip(final int count) throws EOFException {
+      require(count);
+      this.position += count;
+    }
+
+    byte readByte() throws EOFException {
+      require(1);
+      return this.bytes[this.position++];
+    }
+
+    int readInt() throws EOFException {
+      require(Integer.BYTES);
+      int value = 0;
+      for (int i = 0; i < Integer.BYTES; ++i) {
+        value = (value << 8) | (this.bytes[this.position++] & 0xFF);
+      }
+
+      return value;
+    }
+
+    long readLong() throws EOFException {
+      require(Long.BYTES);
+      long value = 0L;
+      for (int i = 0; i < Long.BYTES; ++i) {
+        value = (value << 8) | (this.bytes[this.position++] & 0xFF);
+      }
+
+      return value;
+    }
+
+    long readVarLong() throws IOException {
+      long value = 0L;
+      for (int shift = 0; shift < 64; shift += 7) {
+        final byte b = readByte();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+
+      throw new IOException("Malformed varint");
+    }
+
+    long readSignedVarLong() throws IOException {
+      final long value = readVarLong();
+      return (value >>> 1) ^ -(value & 1L);
+    }
+
+    /**
+     * Reads a length or an element count, which can't be larger than what's left to read.
+     */
+    int readCount() throws IOException {
+      final long count = readVarLong();
+      if (count < 0L || count > this.limit - this.position) {
+        throw new IOException("Invalid length " + count);
+      }
+
+      return (int) count;
+    }
+
+    String readString() throws IOException {
+      final int length = readCount();
+      final String value = new String(this.bytes, this.position, length, StandardCharsets.UTF_8);
+      this.position += length;
+      return value;
+    }
+
+    @Nullable String readNullableString() throws IOException {
+      final long length = readVarLong();
+      if (length == 0L) {
+        return null;
+      } else if (length < 0L || length - 1L > this.limit - this.position) {
+        throw new IOException("Invalid length " + (length - 1L));
+      }
+
+      final String value = new String(this.bytes, this.position, (int) (length - 1L), StandardCharsets.UTF_8);
+      this.position += (int) (length - 1L);
+      return value;
+    }
+  }
+}
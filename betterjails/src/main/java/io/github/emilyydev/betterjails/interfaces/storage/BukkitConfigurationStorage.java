@@ -27,16 +27,13 @@ package io.github.emilyydev.betterjails.interfaces.storage;
 
 import com.github.fefo.betterjails.api.model.jail.Jail;
 import com.github.fefo.betterjails.api.util.ImmutableLocation;
-import com.google.common.collect.ImmutableList;
 import io.github.emilyydev.betterjails.BetterJailsPlugin;
 import io.github.emilyydev.betterjails.api.impl.model.jail.ApiJail;
 import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
-import io.github.emilyydev.betterjails.api.impl.model.prisoner.SentenceExpiry;
-import io.github.emilyydev.betterjails.config.BetterJailsConfiguration;
 import io.github.emilyydev.betterjails.data.upgrade.DataUpgrader;
-import org.bukkit.Server;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.entity.Player;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,14 +42,21 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class BukkitConfigurationStorage implements StorageInterface {
 
@@ -72,16 +76,17 @@ public final class BukkitConfigurationStorage implements StorageInterface {
   private static final String RELEASE_LOCATION_FIELD = "release-location";
   private static final String JAILS_FIELD = "jails";
 
+  private static final int MAX_LOADER_THREADS = 4;
+  private static final int PROGRESS_LOG_MIN_STEP = 1000;
+
   private final BetterJailsPlugin plugin;
-  private final Server server;
-  private final BetterJailsConfiguration config;
+  private final AtomicFileWriter writer;
   private final Path playerDataFolder;
   private final Path jailsFile;
 
   public BukkitConfigurationStorage(final BetterJailsPlugin plugin) {
     this.plugin = plugin;
-    this.config = plugin.configuration();
-    this.server = plugin.getServer();
+    this.writer = new AtomicFileWriter(SyncPolicy.determineSyncPolicy(plugin));
     final Path pluginDir = plugin.getPluginDir();
     this.playerDataFolder = pluginDir.resolve("playerdata");
     this.jailsFile = pluginDir.resolve("jails.yml");
@@ -89,123 +94,151 @@ public final class BukkitConfigurationStorage implements StorageInterface {
 
   @Override
   public void savePrisoner(final ApiPrisoner prisoner) throws IOException {
+    final byte[] bytes = encodePrisoner(prisoner).getBytes(StandardCharsets.UTF_8);
+    this.writer.write(prisonerFile(prisoner), bytes);
+  }
+
+  /**
+   * The contents of a prisoner file for the given prisoner.
+   */
+  public static String encodePrisoner(final ApiPrisoner prisoner) {
     final YamlConfiguration yaml = new YamlConfiguration();
     DataUpgrader.markPrisonerVersion(yaml);
+    writePrisoner(yaml, StoredPrisoner.of(prisoner));
+    return yaml.saveToString();
+  }
+
+  private static void writePrisoner(final ConfigurationSection config, final StoredPrisoner prisoner) {
+    config.set(UUID_FIELD, prisoner.uuid.toString());
+    config.set(NAME_FIELD, prisoner.name);
+    config.set(JAIL_FIELD, prisoner.jailName);
+    config.set(JAILED_BY_FIELD, prisoner.jailedBy);
+    config.set(SECONDS_LEFT_FIELD, prisoner.secondsLeft);
+    config.set(TOTAL_SENTENCE_TIME, prisoner.totalSentenceSeconds);
+    config.set(REASON_FIELD, prisoner.reason);
+    config.set(LAST_LOCATION_FIELD, prisoner.lastLocation);
+    config.set(GROUP_FIELD, prisoner.primaryGroup);
+    config.set(EXTRA_GROUPS_FIELD, prisoner.parentGroups);
+  }
+
+  /**
+   * Reads the contents of a prisoner file of the current data version, jails must already be loaded.
+   */
+  public ApiPrisoner decodePrisoner(final UUID uuid, final String contents) throws IOException {
+    final YamlConfiguration yaml = new YamlConfiguration();
+    try {
+      yaml.loadFromString(contents);
+    } catch (final InvalidConfigurationException ex) {
+      throw new IOException(ex);
+    }
 
-    yaml.set(UUID_FIELD, prisoner.uuid().toString());
-    yaml.set(NAME_FIELD, prisoner.name());
-    yaml.set(JAIL_FIELD, prisoner.jail().name().toLowerCase(Locale.ROOT));
-    yaml.set(JAILED_BY_FIELD, prisoner.jailedBy());
-    yaml.set(SECONDS_LEFT_FIELD, prisoner.timeLeft().getSeconds());
-    yaml.set(TOTAL_SENTENCE_TIME, prisoner.totalSentenceTime().getSeconds());
-    yaml.set(REASON_FIELD, prisoner.imprisonmentReason());
-    yaml.set(LAST_LOCATION_FIELD, prisoner.lastLocationNullable());
-    yaml.set(GROUP_FIELD, prisoner.primaryGroup());
-    yaml.set(EXTRA_GROUPS_FIELD, ImmutableList.copyOf(prisoner.parentGroups()));
-
-    final byte[] bytes = yaml.saveToString().getBytes(StandardCharsets.UTF_8);
-    Files.write(this.playerDataFolder.resolve(prisoner.uuid() + ".yml"), bytes);
+    return readPrisoner(uuid, yaml).toPrisoner(this.plugin);
   }
 
+  /**
+   * Writes every prisoner file as a single batch, so they share the cost of flushing them to disk.
+   */
   @Override
   public void savePrisoners(final Map<UUID, ApiPrisoner> prisoners) throws IOException {
-    IOException ex = null;
-
+    final Map<Path, byte[]> files = new LinkedHashMap<>(prisoners.size());
     for (final ApiPrisoner prisoner : prisoners.values()) {
-      try {
-        savePrisoner(prisoner);
-      } catch (final IOException ioex) {
-        if (ex == null) {
-          ex = ioex;
-        } else {
-          ex.addSuppressed(ioex);
-        }
-      }
+      files.put(prisonerFile(prisoner), encodePrisoner(prisoner).getBytes(StandardCharsets.UTF_8));
     }
 
-    if (ex != null) {
-      throw ex;
-    }
+    this.writer.writeAll(files);
   }
 
   @Override
   public void deletePrisoner(final ApiPrisoner prisoner) throws IOException {
-    final Path playerFile = this.playerDataFolder.resolve(prisoner.uuid() + ".yml");
-    Files.deleteIfExists(playerFile);
+    Files.deleteIfExists(prisonerFile(prisoner));
+  }
+
+  private Path prisonerFile(final ApiPrisoner prisoner) {
+    return this.playerDataFolder.resolve(prisoner.uuid() + ".yml");
   }
 
   @Override
   public Map<UUID, ApiPrisoner> loadPrisoners() throws IOException {
     final Map<UUID, ApiPrisoner> out = new HashMap<>();
-    final ImmutableLocation backupLocation = this.config.backupLocation();
-    Files.createDirectories(this.playerDataFolder);
+    for (final StoredPrisoner storedPrisoner : loadStoredPrisoners().values()) {
+      out.put(storedPrisoner.uuid, storedPrisoner.toPrisoner(this.plugin));
+    }
 
-    IOException migrationException = null;
+    return out;
+  }
+
+  /**
+   * Parses every file in the {@code playerdata} folder. Files are parsed (and migrated if needed) concurrently on a
+   * bounded fork-join pool, as YAML parsing is by far the most expensive part of loading prisoners.
+   */
+  Map<UUID, StoredPrisoner> loadStoredPrisoners() throws IOException {
+    Files.createDirectories(this.playerDataFolder);
 
+    final List<Path> files = new ArrayList<>();
     try (final DirectoryStream<Path> ds = Files.newDirectoryStream(this.playerDataFolder)) {
       for (final Path file : ds) {
-        final YamlConfiguration yaml = YamlConfiguration.loadConfiguration(file.toFile());
-        try {
-          migratePrisonerData(yaml, file);
-        } catch (final IOException ex) {
-          if (migrationException == null) {
-            migrationException = ex;
-          } else {
-            migrationException.addSuppressed(ex);
-          }
-        }
-
-        final UUID uuid = UUID.fromString(file.getFileName().toString().replace(".yml", ""));
-        final String name = yaml.getString(NAME_FIELD);
-
-        final boolean unknownLocation = !yaml.contains(LAST_LOCATION_FIELD);
-        final String jailName = yaml.getString(JAIL_FIELD);
-        Jail jail = this.plugin.jailData().getJail(jailName);
-        if (jail == null) {
-          // If the jail has been removed, just fall back to the first jail in the config. If there are no jails, this
-          // will throw an exception, but why would you have no jails?
-          jail = this.plugin.jailData().getJails().values().iterator().next();
-          LOGGER.warn("Jail {} does not exist", jailName);
-          LOGGER.warn("Player {}/{} was attempted to relocate to {}", name, uuid, jail.name());
-        }
-
-        // TODO(v2): We have to set some location here, due to @NotNull API contract in Prisoner. It should be made
-        //  nullable eventually, since backupLocation no longer carries any significance.
-        final ImmutableLocation lastLocation;
-        if (yaml.contains(LAST_LOCATION_FIELD)) {
-          lastLocation = (ImmutableLocation) yaml.get(LAST_LOCATION_FIELD);
+        if (file.getFileName().toString().endsWith(AtomicFileWriter.TEMP_SUFFIX)) {
+          // left behind by a write that didn't finish, the file it was replacing is still intact
+          Files.deleteIfExists(file);
         } else {
-          lastLocation = backupLocation;
+          files.add(file);
         }
+      }
+    }
 
-        final String group = yaml.getString(GROUP_FIELD);
-        final List<String> parentGroups = yaml.getStringList(EXTRA_GROUPS_FIELD);
-        final String jailedBy = yaml.getString(JAILED_BY_FIELD);
-        final Duration timeLeft = Duration.ofSeconds(yaml.getLong(SECONDS_LEFT_FIELD, 0L));
-        final Duration totalSentenceTime = Duration.ofSeconds(yaml.getInt(TOTAL_SENTENCE_TIME, 0));
-        final String reason = yaml.getString(REASON_FIELD);
+    // upgraders read this setting, make sure it's computed before it's accessed concurrently
+    this.plugin.configuration().backupLocation();
+
+    final int total = files.size();
+    final int progressStep = Math.max(PROGRESS_LOG_MIN_STEP, total / 10);
+    final AtomicInteger loaded = new AtomicInteger();
+    final Map<UUID, StoredPrisoner> out = new ConcurrentHashMap<>(total);
+    final Queue<IOException> migrationExceptions = new ConcurrentLinkedQueue<>();
+
+    final ForkJoinPool pool = new ForkJoinPool(Math.min(MAX_LOADER_THREADS, Runtime.getRuntime().availableProcessors()));
+    try {
+      final CompletableFuture<?>[] futures = new CompletableFuture<?>[total];
+      for (int i = 0; i < total; ++i) {
+        final Path file = files.get(i);
+        futures[i] = CompletableFuture.runAsync(() -> {
+          final YamlConfiguration yaml = YamlConfiguration.loadConfiguration(file.toFile());
+          try {
+            migratePrisonerData(yaml, file);
+          } catch (final IOException ex) {
+            migrationExceptions.add(ex);
+          }
 
-        final Player existingPlayer = this.server.getPlayer(uuid); // This is only relevant for reloading
+          final UUID uuid = UUID.fromString(file.getFileName().toString().replace(".yml", ""));
+          out.put(uuid, readPrisoner(uuid, yaml));
 
-        final SentenceExpiry expiry;
-        if (this.config.considerOfflineTime() || existingPlayer != null) {
-          // If considering offline time, or if the player is online, the player will have a "deadline", jailedUntil,
-          // whereas timeLeft would be constantly changing.
-          expiry = SentenceExpiry.of(Instant.now().plus(timeLeft));
-        } else {
-          // If not considering offline time, all players currently have a remaining time, timeLeft, but when they'd
-          // be released, jailedUntil, will remain unknown until the player actually joins.
-          expiry = SentenceExpiry.of(timeLeft);
-        }
-
-        out.put(uuid, new ApiPrisoner(uuid, name, group, parentGroups, jail, jailedBy, expiry, totalSentenceTime, reason, lastLocation, unknownLocation));
+          final int count = loaded.incrementAndGet();
+          if (count % progressStep == 0) {
+            LOGGER.info("Loaded {}/{} prisoner files", count, total);
+          }
+        }, pool);
       }
-    } catch (final IOException ex) {
-      if (migrationException != null) {
-        ex.addSuppressed(migrationException);
+
+      CompletableFuture.allOf(futures).join();
+    } catch (final CompletionException ex) {
+      final Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      } else {
+        throw new IOException(cause);
       }
+    } finally {
+      pool.shutdown();
+    }
 
-      throw ex;
+    IOException migrationException = null;
+    for (final IOException ex : migrationExceptions) {
+      if (migrationException == null) {
+        migrationException = ex;
+      } else {
+        migrationException.addSuppressed(ex);
+      }
     }
 
     if (migrationException != null) {
@@ -215,7 +248,44 @@ public final class BukkitConfigurationStorage implements StorageInterface {
     return out;
   }
 
-  private Map<String, Object> serializeJail(final Jail jail) {
+  private static StoredPrisoner readPrisoner(final UUID uuid, final ConfigurationSection config) {
+    return new StoredPrisoner(
+        uuid,
+        config.getString(NAME_FIELD),
+        config.getString(JAIL_FIELD),
+        config.getString(JAILED_BY_FIELD),
+        config.getLong(SECONDS_LEFT_FIELD, 0L),
+        config.getInt(TOTAL_SENTENCE_TIME, 0),
+        config.getString(REASON_FIELD),
+        config.contains(LAST_LOCATION_FIELD) ? (ImmutableLocation) config.get(LAST_LOCATION_FIELD) : null,
+        config.getString(GROUP_FIELD),
+        config.getStringList(EXTRA_GROUPS_FIELD)
+    );
+  }
+
+  private static void writeJails(final ConfigurationSection config, final Collection<? extends Jail> jails) {
+    final List<Map<String, Object>> storedJails = new ArrayList<>();
+    for (final Jail jail : jails) {
+      storedJails.add(serializeJail(jail));
+    }
+
+    config.set(JAILS_FIELD, storedJails);
+  }
+
+  private static Map<String, Jail> readJails(final ConfigurationSection config) {
+    final Map<String, Jail> out = new HashMap<>();
+    final List<Map<?, ?>> jails = config.getMapList(JAILS_FIELD);
+    for (final Map<?, ?> jail : jails) {
+      final String name = ((String) jail.get(NAME_FIELD)).toLowerCase(Locale.ROOT);
+      final ImmutableLocation location = (ImmutableLocation) jail.get(LOCATION_FIELD);
+      final ImmutableLocation releaseLocation = (ImmutableLocation) jail.get(RELEASE_LOCATION_FIELD);
+      out.put(name, new ApiJail(name, location, releaseLocation));
+    }
+
+    return out;
+  }
+
+  private static Map<String, Object> serializeJail(final Jail jail) {
     final Map<String, Object> map = new HashMap<>();
     map.put(NAME_FIELD, jail.name());
     map.put(LOCATION_FIELD, jail.location());
@@ -234,14 +304,9 @@ public final class BukkitConfigurationStorage implements StorageInterface {
   public void saveJails(final Map<String, Jail> jails) throws IOException {
     final YamlConfiguration yaml = new YamlConfiguration();
     DataUpgrader.markJailVersion(yaml);
+    writeJails(yaml, jails.values());
 
-    final List<Map<String, Object>> storedJails = new ArrayList<>();
-    for (final Jail jail : jails.values()) {
-      storedJails.add(serializeJail(jail));
-    }
-    yaml.set(JAILS_FIELD, storedJails);
-
-    Files.write(this.jailsFile, yaml.saveToString().getBytes(StandardCharsets.UTF_8));
+    this.writer.write(this.jailsFile, yaml.saveToString().getBytes(StandardCharsets.UTF_8));
   }
 
   @Override
@@ -253,22 +318,13 @@ public final class BukkitConfigurationStorage implements StorageInterface {
 
   @Override
   public Map<String, Jail> loadJails() throws IOException {
-    final Map<String, Jail> out = new HashMap<>();
     if (Files.notExists(this.jailsFile)) {
       Files.createFile(this.jailsFile);
     }
 
     final YamlConfiguration yaml = YamlConfiguration.loadConfiguration(this.jailsFile.toFile());
     migrateJailData(yaml, this.jailsFile);
-    final List<Map<?, ?>> jails = yaml.getMapList(JAILS_FIELD);
-    for (final Map<?, ?> jail : jails) {
-      final String name = ((String) jail.get(NAME_FIELD)).toLowerCase(Locale.ROOT);
-      final ImmutableLocation location = (ImmutableLocation) jail.get(LOCATION_FIELD);
-      final ImmutableLocation releaseLocation = (ImmutableLocation) jail.get(RELEASE_LOCATION_FIELD);
-      out.put(name, new ApiJail(name, location, releaseLocation));
-    }
-
-    return out;
+    return readJails(yaml);
   }
 
   private void migratePrisonerData(final YamlConfiguration config, final Path file) throws IOException {
@@ -288,7 +344,7 @@ public final class BukkitConfigurationStorage implements StorageInterface {
 
     if (changed) {
       DataUpgrader.markPrisonerVersion(config);
-      Files.write(file, config.saveToString().getBytes(StandardCharsets.UTF_8));
+      this.writer.write(file, config.saveToString().getBytes(StandardCharsets.UTF_8));
     }
   }
 
@@ -310,7 +366,7 @@ public final class BukkitConfigurationStorage implements StorageInterface {
 
     if (changed) {
       DataUpgrader.markJailVersion(config);
-      Files.write(file, config.saveToString().getBytes(StandardCharsets.UTF_8));
+      this.writer.write(file, config.saveToString().getBytes(StandardCharsets.UTF_8));
     }
   }
 }
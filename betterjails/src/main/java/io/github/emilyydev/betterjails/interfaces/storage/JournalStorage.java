@@ -0,0 +1,388 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.interfaces.storage;
+
+import com.github.fefo.betterjails.api.model.jail.Jail;
+import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Stores prisoners as records appended to a single journal file ({@code prisoners.journal}), which is periodically
+ * compacted into a snapshot file ({@code prisoners.snapshot}) holding only the latest record of every prisoner.
+ * <p>
+ * Saving or deleting a prisoner is a single sequential append of a prisoner encoded with {@link BinaryCodec}. On load the snapshot is read first and the journal is
+ * replayed on top of it; a torn record at the end of the journal (e.g. the server crashed mid-write) is discarded.
+ * If neither file exists the prisoners in the {@code playerdata} folder are imported.
+ * <p>
+ * Jails are few and rarely modified, so they are still stored in {@code jails.yml}.
+ */
+public final class JournalStorage implements StorageInterface {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("BetterJails");
+
+  private static final int JOURNAL_MAGIC = 0x424A4A4C; // BJJL
+  private static final int SNAPSHOT_MAGIC = 0x424A534E; // BJSN
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = Integer.BYTES * 2;
+  // length + op + crc
+  static final int RECORD_OVERHEAD = Integer.BYTES + Byte.BYTES + Integer.BYTES;
+
+  private static final byte OP_PUT = 1;
+  private static final byte OP_DELETE = 2;
+
+  private static final int MIN_COMPACTION_THRESHOLD = 1024;
+
+  private final BetterJailsPlugin plugin;
+  private final BukkitConfigurationStorage yamlStorage;
+  private final SyncPolicy syncPolicy;
+  private final Path journalFile;
+  private final Path snapshotFile;
+  // latest encoded record of every live prisoner, what a compaction writes out
+  private final Map<UUID, byte[]> liveRecords = new HashMap<>();
+  private @Nullable FileChannel journal = null;
+  private int journalRecords = 0;
+
+  public JournalStorage(final BetterJailsPlugin plugin) {
+    this.plugin = plugin;
+    this.yamlStorage = new BukkitConfigurationStorage(plugin);
+    this.syncPolicy = SyncPolicy.determineSyncPolicy(plugin);
+    final Path pluginDir = plugin.getPluginDir();
+    this.journalFile = pluginDir.resolve("prisoners.journal");
+    this.snapshotFile = pluginDir.resolve("prisoners.snapshot");
+  }
+
+  @Override
+  public void savePrisoner(final ApiPrisoner prisoner) throws IOException {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+    writePut(new DataOutputStream(buffer), prisoner);
+    append(buffer.toByteArray(), 1);
+  }
+
+  @Override
+  public void savePrisoners(final Map<UUID, ApiPrisoner> prisoners) throws IOException {
+    if (prisoners.isEmpty()) {
+      return;
+    }
+
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(prisoners.size() * 256);
+    final DataOutputStream out = new DataOutputStream(buffer);
+    for (final ApiPrisoner prisoner : prisoners.values()) {
+      writePut(out, prisoner);
+    }
+
+    append(buffer.toByteArray(), prisoners.size());
+  }
+
+  @Override
+  public void deletePrisoner(final ApiPrisoner prisoner) throws IOException {
+    final UUID uuid = prisoner.uuid();
+    if (this.liveRecords.remove(uuid) == null) {
+      return;
+    }
+
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(RECORD_OVERHEAD + 16);
+    writeRecord(new DataOutputStream(buffer), OP_DELETE, uuidBytes(uuid));
+    append(buffer.toByteArray(), 1);
+  }
+
+  @Override
+  public Map<UUID, ApiPrisoner> loadPrisoners() throws IOException {
+    closeJournal();
+    this.liveRecords.clear();
+    this.journalRecords = 0;
+
+    if (Files.notExists(this.snapshotFile) && Files.notExists(this.journalFile)) {
+      importYamlPrisoners();
+    } else {
+      if (Files.exists(this.snapshotFile)) {
+        replay(this.snapshotFile, SNAPSHOT_MAGIC);
+      }
+
+      if (Files.exists(this.journalFile)) {
+        this.journalRecords = replay(this.journalFile, JOURNAL_MAGIC);
+      }
+    }
+
+    final Map<UUID, ApiPrisoner> out = new HashMap<>(this.liveRecords.size());
+    for (final byte[] record : this.liveRecords.values()) {
+      for (final StoredPrisoner storedPrisoner : BinaryCodec.decodeStoredPrisoners(record)) {
+        out.put(storedPrisoner.uuid, storedPrisoner.toPrisoner(this.plugin));
+      }
+    }
+
+    if (shouldCompact()) {
+      compact();
+    }
+
+    return out;
+  }
+
+  @Override
+  public void saveJail(final Jail jail) throws IOException {
+    this.yamlStorage.saveJail(jail);
+  }
+
+  @Override
+  public void saveJails(final Map<String, Jail> jails) throws IOException {
+    this.yamlStorage.saveJails(jails);
+  }
+
+  @Override
+  public void deleteJail(final Jail jail) throws IOException {
+    this.yamlStorage.deleteJail(jail);
+  }
+
+  @Override
+  public Map<String, Jail> loadJails() throws IOException {
+    return this.yamlStorage.loadJails();
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeJournal();
+  }
+
+  private void importYamlPrisoners() throws IOException {
+    final Map<UUID, StoredPrisoner> storedPrisoners = this.yamlStorage.loadStoredPrisoners();
+    if (storedPrisoners.isEmpty()) {
+      return;
+    }
+
+    for (final StoredPrisoner storedPrisoner : storedPrisoners.values()) {
+      this.liveRecords.put(storedPrisoner.uuid, BinaryCodec.encodeStoredPrisoners(Collections.singletonList(storedPrisoner)));
+    }
+
+    compact();
+    LOGGER.info("Imported {} prisoners from the playerdata folder into the prisoner journal", storedPrisoners.size());
+    LOGGER.info("The playerdata folder is no longer used and can be removed once you verified the imported data");
+  }
+
+  private void writePut(final DataOutput out, final ApiPrisoner prisoner) throws IOException {
+    final byte[] record = BinaryCodec.encodePrisoner(prisoner);
+    this.liveRecords.put(prisoner.uuid(), record);
+    writeRecord(out, OP_PUT, record);
+  }
+
+  private void append(final byte[] records, final int recordCount) throws IOException {
+    final FileChannel journal = openJournal();
+    final ByteBuffer buffer = ByteBuffer.wrap(records);
+    while (buffer.hasRemaining()) {
+      journal.write(buffer);
+    }
+
+    // everything written together (a save, or the prisoners coalesced by StorageAccess) shares a single flush
+    if (this.syncPolicy != SyncPolicy.NEVER) {
+      journal.force(false);
+    }
+
+    this.journalRecords += recordCount;
+    if (shouldCompact()) {
+      compact();
+    }
+  }
+
+  private boolean shouldCompact() {
+    return this.journalRecords > Math.max(MIN_COMPACTION_THRESHOLD, this.liveRecords.size() * 2);
+  }
+
+  /**
+   * Writes every live record into a new snapshot, atomically replaces the old one and empties the journal. If the
+   * server dies between both steps, the journal is replayed on top of a snapshot that already contains its records,
+   * which yields the same state.
+   */
+  private void compact() throws IOException {
+    final Path tempFile = this.snapshotFile.resolveSibling(this.snapshotFile.getFileName() + ".tmp");
+    try (final FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      final ByteArrayOutputStream buffer = new ByteArrayOutputStream(HEADER_SIZE + this.liveRecords.size() * 256);
+      final DataOutputStream out = new DataOutputStream(buffer);
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      for (final byte[] record : this.liveRecords.values()) {
+        writeRecord(out, OP_PUT, record);
+      }
+
+      final ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+
+      channel.force(true);
+    }
+
+    Files.move(tempFile, this.snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    // the rename has to be on disk before the journal is emptied, or a power cut could leave the old snapshot behind
+    // with nothing to replay on top of it
+    AtomicFileWriter.syncDirectory(this.snapshotFile.toAbsolutePath().getParent());
+
+    // truncating drops the header too, it is written again right away
+    final FileChannel journal = openJournal();
+    journal.truncate(0L);
+    writeHeader(journal);
+    this.journalRecords = 0;
+  }
+
+  /**
+   * Applies every intact record of the file to {@link #liveRecords} and returns how many records were read. Anything
+   * after the first torn or corrupt record is cut off the file.
+   */
+  private int replay(final Path file, final int expectedMagic) throws IOException {
+    final byte[] bytes = Files.readAllBytes(file);
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    if (buffer.remaining() < HEADER_SIZE) {
+      LOGGER.warn("{} is missing its header, ignoring its contents", file);
+      truncate(file, 0);
+      return 0;
+    }
+
+    final int magic = buffer.getInt();
+    final int version = buffer.getInt();
+    if (magic != expectedMagic) {
+      throw new IOException(file + " is not a BetterJails prisoner journal or snapshot");
+    }
+
+    if (version > FORMAT_VERSION) {
+      throw new IOException(file + " is from a newer version of BetterJails, consider updating BetterJails");
+    }
+
+    int records = 0;
+    final CRC32 crc = new CRC32();
+    while (buffer.remaining() >= RECORD_OVERHEAD) {
+      final int start = buffer.position();
+      final int length = buffer.getInt();
+      if (length < 0 || buffer.remaining() < length + Byte.BYTES + Integer.BYTES) {
+        LOGGER.warn("Discarding torn record at the end of {}", file);
+        truncate(file, start);
+        return records;
+      }
+
+      final byte op = buffer.get();
+      final int payloadOffset = buffer.position();
+      buffer.position(payloadOffset + length);
+      final int checksum = buffer.getInt();
+
+      crc.reset();
+      crc.update(bytes, payloadOffset - Byte.BYTES, length + Byte.BYTES);
+      if ((int) crc.getValue() != checksum) {
+        LOGGER.warn("Discarding corrupt records at the end of {}", file);
+        truncate(file, start);
+        return records;
+      }
+
+      if (op == OP_PUT) {
+        final byte[] record = new byte[length];
+        System.arraycopy(bytes, payloadOffset, record, 0, length);
+        this.liveRecords.put(BinaryCodec.firstPrisonerUuid(record, 0, length), record);
+      } else if (op == OP_DELETE) {
+        final ByteBuffer payload = ByteBuffer.wrap(bytes, payloadOffset, length);
+        this.liveRecords.remove(new UUID(payload.getLong(), payload.getLong()));
+      } else {
+        throw new IOException("Unknown record type " + op + " in " + file);
+      }
+
+      ++records;
+    }
+
+    if (buffer.hasRemaining()) {
+      LOGGER.warn("Discarding torn record at the end of {}", file);
+      truncate(file, buffer.position());
+    }
+
+    return records;
+  }
+
+  private void truncate(final Path file, final long size) throws IOException {
+    if (file.equals(this.journalFile)) {
+      // the header is rewritten when the journal is opened again
+      try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.truncate(Math.max(size, 0L));
+      }
+    }
+  }
+
+  private FileChannel openJournal() throws IOException {
+    FileChannel journal = this.journal;
+    if (journal == null) {
+      journal = FileChannel.open(this.journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+      if (journal.size() < HEADER_SIZE) {
+        journal.truncate(0L);
+        writeHeader(journal);
+      }
+
+      journal.position(journal.size());
+      this.journal = journal;
+    }
+
+    return journal;
+  }
+
+  private static void writeHeader(final FileChannel journal) throws IOException {
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(JOURNAL_MAGIC).putInt(FORMAT_VERSION).flip();
+    journal.write(header, 0L);
+    journal.position(HEADER_SIZE);
+  }
+
+  private void closeJournal() throws IOException {
+    final FileChannel journal = this.journal;
+    if (journal != null) {
+      this.journal = null;
+      journal.close();
+    }
+  }
+
+  static void writeRecord(final DataOutput out, final byte op, final byte[] payload) throws IOException {
+    final CRC32 crc = new CRC32();
+    crc.update(op);
+    crc.update(payload, 0, payload.length);
+
+    out.writeInt(payload.length);
+    out.writeByte(op);
+    out.write(payload);
+    out.writeInt((int) crc.getValue());
+  }
+
+  static byte[] uuidBytes(final UUID uuid) {
+    return ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+  }
+}
@@ -0,0 +1,261 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.interfaces.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The prisoners of a {@link MappedStorage} as they were when they were loaded. Lookups go through the snapshot's sorted
+ * index (and the handful of records written after it), prisoners are only decoded when they are retrieved, every time
+ * they are retrieved. It is immutable, later writes aren't reflected in it.
+ */
+public final class MappedPrisoners extends AbstractMap<UUID, ApiPrisoner> {
+
+  public static final MappedPrisoners EMPTY = new MappedPrisoners(null, null, ImmutableMap.of(), ImmutableSet.of(), Instant.EPOCH);
+
+  private final @Nullable BetterJailsPlugin plugin;
+  private final @Nullable MappedSnapshot snapshot;
+  // records written after the snapshot, and prisoners of the snapshot deleted after it
+  private final Map<UUID, MappedSnapshot.Entry> newerRecords;
+  private final Set<UUID> deleted;
+  private final Instant loadedAt;
+  private final int size;
+  private @Nullable Set<Entry<UUID, ApiPrisoner>> entrySet = null;
+
+  MappedPrisoners(
+      final @Nullable BetterJailsPlugin plugin,
+      final @Nullable MappedSnapshot snapshot,
+      final Map<UUID, MappedSnapshot.Entry> newerRecords,
+      final Set<UUID> deleted,
+      final Instant loadedAt
+  ) {
+    this.plugin = plugin;
+    this.snapshot = snapshot;
+    this.newerRecords = ImmutableMap.copyOf(newerRecords);
+    this.deleted = ImmutableSet.copyOf(deleted);
+    this.loadedAt = loadedAt;
+
+    int size = snapshot == null ? 0 : snapshot.count() - this.deleted.size();
+    for (final UUID uuid : this.newerRecords.keySet()) {
+      if (snapshot == null || snapshot.find(uuid) < 0) {
+        ++size;
+      }
+    }
+
+    this.size = size;
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    if (!(key instanceof UUID)) {
+      return false;
+    }
+
+    return this.newerRecords.containsKey(key) || snapshotIndex((UUID) key) >= 0;
+  }
+
+  @Override
+  public @Nullable ApiPrisoner get(final Object key) {
+    if (!(key instanceof UUID)) {
+      return null;
+    }
+
+    try {
+      final MappedSnapshot.Entry entry = entryOf((UUID) key);
+      return entry == null ? null : decode(entry);
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * Calls the consumer with the unique id, seconds left, the instant their time runs from and name of every prisoner,
+   * without decoding them.
+   */
+  public void forEachSummary(final SummaryConsumer consumer) {
+    try {
+      final MappedSnapshot snapshot = this.snapshot;
+      if (snapshot != null) {
+        for (int i = 0; i < snapshot.count(); ++i) {
+          final UUID uuid = snapshot.uuidAt(i);
+          if (!this.deleted.contains(uuid) && !this.newerRecords.containsKey(uuid)) {
+            final byte[] record = snapshot.recordAt(i);
+            final String name = BinaryCodec.firstPrisonerName(record, 0, record.length);
+            consumer.accept(uuid, snapshot.secondsLeftAt(i), runningSince(snapshot.timestampAt(i)), name);
+          }
+        }
+      }
+
+      for (final MappedSnapshot.Entry entry : this.newerRecords.values()) {
+        final String name = BinaryCodec.firstPrisonerName(entry.record, 0, entry.record.length);
+        consumer.accept(entry.uuid, entry.secondsLeft, runningSince(entry.timestamp), name);
+      }
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public Set<Entry<UUID, ApiPrisoner>> entrySet() {
+    Set<Entry<UUID, ApiPrisoner>> entrySet = this.entrySet;
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+      this.entrySet = entrySet;
+    }
+
+    return entrySet;
+  }
+
+  private int snapshotIndex(final UUID uuid) {
+    final MappedSnapshot snapshot = this.snapshot;
+    return snapshot == null || this.deleted.contains(uuid) ? -1 : snapshot.find(uuid);
+  }
+
+  private MappedSnapshot.@Nullable Entry entryOf(final UUID uuid) throws IOException {
+    final MappedSnapshot.Entry entry = this.newerRecords.get(uuid);
+    if (entry != null) {
+      return entry;
+    }
+
+    final int index = snapshotIndex(uuid);
+    return index < 0 ? null : Objects.requireNonNull(this.snapshot).entryAt(index);
+  }
+
+  private ApiPrisoner decode(final MappedSnapshot.Entry entry) throws IOException {
+    final BetterJailsPlugin plugin = Objects.requireNonNull(this.plugin, "plugin");
+    return BinaryCodec.decodeStoredPrisoners(entry.record).get(0).toPrisoner(plugin, runningSince(entry.timestamp));
+  }
+
+  /**
+   * The instant time runs from for a prisoner written at the given timestamp. When offline time is considered that is
+   * when they were written if their sentence was running then, otherwise it's when these prisoners were loaded.
+   */
+  private Instant runningSince(final long timestamp) {
+    final BetterJailsPlugin plugin = this.plugin;
+    if (timestamp != MappedSnapshot.NOT_RUNNING && plugin != null && plugin.configuration().considerOfflineTime()) {
+      return Instant.ofEpochMilli(timestamp);
+    }
+
+    return this.loadedAt;
+  }
+
+  @FunctionalInterface
+  public interface SummaryConsumer {
+
+    void accept(UUID uuid, long secondsLeft, Instant runningSince, @Nullable String name);
+  }
+
+  private final class EntrySet extends AbstractSet<Entry<UUID, ApiPrisoner>> {
+
+    @Override
+    public Iterator<Entry<UUID, ApiPrisoner>> iterator() {
+      final MappedSnapshot snapshot = MappedPrisoners.this.snapshot;
+      final Iterator<UUID> snapshotUuids = snapshot == null
+          ? Iterators.<UUID>emptyIterator()
+          : Iterators.filter(snapshot.uuids(), uuid -> !MappedPrisoners.this.deleted.contains(uuid) && !MappedPrisoners.this.newerRecords.containsKey(uuid));
+      final Iterator<UUID> uuids = Iterators.concat(snapshotUuids, MappedPrisoners.this.newerRecords.keySet().iterator());
+      return Iterators.<UUID, Entry<UUID, ApiPrisoner>>transform(uuids, LazyEntry::new);
+    }
+
+    @Override
+    public int size() {
+      return MappedPrisoners.this.size;
+    }
+  }
+
+  /**
+   * An entry whose prisoner is decoded the first time it's needed.
+   */
+  private final class LazyEntry implements Entry<UUID, ApiPrisoner> {
+
+    private final UUID uuid;
+    private @Nullable ApiPrisoner prisoner = null;
+
+    LazyEntry(final UUID uuid) {
+      this.uuid = uuid;
+    }
+
+    @Override
+    public UUID getKey() {
+      return this.uuid;
+    }
+
+    @Override
+    public ApiPrisoner getValue() {
+      ApiPrisoner prisoner = this.prisoner;
+      if (prisoner == null) {
+        prisoner = Objects.requireNonNull(get(this.uuid));
+        this.prisoner = prisoner;
+      }
+
+      return prisoner;
+    }
+
+    @Override
+    public ApiPrisoner setValue(final ApiPrisoner value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) {
+        return true;
+      }
+
+      if (!(other instanceof Entry)) {
+        return false;
+      }
+
+      final Entry<?, ?> that = (Entry<?, ?>) other;
+      return this.uuid.equals(that.getKey()) && getValue().equals(that.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return this.uuid.hashCode() ^ getValue().hashCode();
+    }
+  }
+}
@@ -0,0 +1,226 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.interfaces.storage;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A read-only, memory-mapped prisoner snapshot file. The file starts with a header, followed by one fixed-size index
+ * entry per prisoner sorted by unique id, followed by the prisoners' {@link BinaryCodec} records:
+ * <pre>
+ *   header: magic (int), version (int), prisoner count (int), reserved (int)
+ *   entry:  uuid (2 longs), seconds left (long), timestamp (long), record offset (int), record length (int)
+ * </pre>
+ * The timestamp is when the seconds left were taken (epoch milliseconds) if the sentence was running then, or
+ * {@link #NOT_RUNNING} if it was paused, so a running sentence's deadline is known without rewriting the prisoner.
+ * Opening a snapshot only validates the header, prisoners are found by binary search over the index and their records
+ * are only read when asked for.
+ */
+final class MappedSnapshot {
+
+  private static final int MAGIC = 0x424A4D53; // BJMS
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = Integer.BYTES * 4;
+  private static final int ENTRY_SIZE = Long.BYTES * 4 + Integer.BYTES * 2;
+
+  static final long NOT_RUNNING = 0L;
+
+  static MappedSnapshot open(final Path file) throws IOException {
+    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+        throw new IOException(file + " is not a valid prisoner snapshot");
+      }
+
+      // the mapping stays valid after the channel is closed
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+      if (buffer.getInt(0) != MAGIC) {
+        throw new IOException(file + " is not a BetterJails prisoner snapshot");
+      }
+
+      if (buffer.getInt(Integer.BYTES) > FORMAT_VERSION) {
+        throw new IOException(file + " is from a newer version of BetterJails, consider updating BetterJails");
+      }
+
+      final int count = buffer.getInt(Integer.BYTES * 2);
+      if (count < 0 || HEADER_SIZE + (long) count * ENTRY_SIZE > size) {
+        throw new IOException(file + " is truncated");
+      }
+
+      return new MappedSnapshot(file, buffer, count);
+    }
+  }
+
+  /**
+   * Writes a snapshot holding the given entries, which must be sorted by unique id, and syncs it to disk.
+   */
+  static void write(final Path file, final List<Entry> entries) throws IOException {
+    final int count = entries.size();
+    long offset = HEADER_SIZE + (long) count * ENTRY_SIZE;
+    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(count);
+      out.writeInt(0);
+
+      for (final Entry entry : entries) {
+        if (offset + entry.record.length > Integer.MAX_VALUE) {
+          throw new IOException("Too many prisoners for a single snapshot");
+        }
+
+        out.writeLong(entry.uuid.getMostSignificantBits());
+        out.writeLong(entry.uuid.getLeastSignificantBits());
+        out.writeLong(entry.secondsLeft);
+        out.writeLong(entry.timestamp);
+        out.writeInt((int) offset);
+        out.writeInt(entry.record.length);
+        offset += entry.record.length;
+      }
+
+      for (final Entry entry : entries) {
+        out.write(entry.record);
+      }
+
+      out.flush();
+      channel.force(true);
+    }
+  }
+
+  private final Path file;
+  private final MappedByteBuffer buffer;
+  private final int count;
+
+  private MappedSnapshot(final Path file, final MappedByteBuffer buffer, final int count) {
+    this.file = file;
+    this.buffer = buffer;
+    this.count = count;
+  }
+
+  Path file() {
+    return this.file;
+  }
+
+  int count() {
+    return this.count;
+  }
+
+  /**
+   * The index of the prisoner's entry, or a negative value if it isn't in this snapshot.
+   */
+  int find(final UUID uuid) {
+    int low = 0;
+    int high = this.count - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final int comparison = uuidAt(middle).compareTo(uuid);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+
+    return -1;
+  }
+
+  UUID uuidAt(final int index) {
+    final int position = entryPosition(index);
+    return new UUID(this.buffer.getLong(position), this.buffer.getLong(position + Long.BYTES));
+  }
+
+  long secondsLeftAt(final int index) {
+    return this.buffer.getLong(entryPosition(index) + Long.BYTES * 2);
+  }
+
+  long timestampAt(final int index) {
+    return this.buffer.getLong(entryPosition(index) + Long.BYTES * 3);
+  }
+
+  byte[] recordAt(final int index) throws IOException {
+    final int position = entryPosition(index) + Long.BYTES * 4;
+    final int offset = this.buffer.getInt(position);
+    final int length = this.buffer.getInt(position + Integer.BYTES);
+    if (offset < 0 || length < 0 || (long) offset + length > this.buffer.capacity()) {
+      throw new IOException("Record " + index + " of " + this.file + " is out of bounds");
+    }
+
+    // absolute bulk reads aren't available in Java 8, read through a duplicate so this is safe to call concurrently
+    final ByteBuffer duplicate = this.buffer.duplicate();
+    duplicate.position(offset);
+    final byte[] record = new byte[length];
+    duplicate.get(record);
+    return record;
+  }
+
+  Entry entryAt(final int index) throws IOException {
+    return new Entry(uuidAt(index), secondsLeftAt(index), timestampAt(index), recordAt(index));
+  }
+
+  Iterator<UUID> uuids() {
+    return new AbstractIterator<UUID>() {
+      private int next = 0;
+
+      @Override
+      protected UUID computeNext() {
+        return this.next < MappedSnapshot.this.count ? uuidAt(this.next++) : endOfData();
+      }
+    };
+  }
+
+  private static int entryPosition(final int index) {
+    return HEADER_SIZE + index * ENTRY_SIZE;
+  }
+
+  static final class Entry {
+
+    final UUID uuid;
+    final long secondsLeft;
+    final long timestamp;
+    final byte[] record;
+
+    Entry(final UUID uuid, final long secondsLeft, final long timestamp, final byte[] record) {
+      this.uuid = uuid;
+      this.secondsLeft = secondsLeft;
+      this.timestamp = timestamp;
+      this.record = record;
+    }
+  }
+}
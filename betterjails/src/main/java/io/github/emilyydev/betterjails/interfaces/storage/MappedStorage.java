@@ -0,0 +1,478 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.interfaces.storage;
+
+import com.github.fefo.betterjails.api.model.jail.Jail;
+import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.SentenceExpiry;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Stores prisoners in a memory-mapped snapshot file ({@code prisoners-<generation>.mapped}, see
+ * {@link MappedSnapshot}) plus a journal of the changes made since it was written ({@code prisoners.mapped.journal}).
+ * <p>
+ * Loading only maps the snapshot and replays the journal, prisoners are decoded as they are looked up (see
+ * {@link MappedPrisoners}), so how long it takes barely depends on how many prisoners there are. If neither file exists
+ * the prisoners in the {@code playerdata} folder are imported.
+ * <p>
+ * Journal records carry the same seconds left and timestamp as snapshot entries ahead of the prisoner's record, so
+ * compacting never decodes a prisoner, and stored prisoners whose time runs while they are offline keep their deadline
+ * without being written again.
+ * <p>
+ * Once the journal grows too large a new snapshot generation is written and the journal is atomically replaced by an
+ * empty one pointing at it. Snapshots are never overwritten, which some platforms don't allow while they are mapped, the
+ * previous generation is deleted right away if possible and otherwise on the next load.
+ * <p>
+ * Jails are few and rarely modified, so they are still stored in {@code jails.yml}.
+ */
+public final class MappedStorage implements StorageInterface {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("BetterJails");
+
+  private static final int JOURNAL_MAGIC = 0x424A4D4A; // BJMJ
+  private static final int FORMAT_VERSION = 1;
+  // magic + version + snapshot generation
+  private static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES;
+
+  private static final byte OP_PUT = 1;
+  private static final byte OP_DELETE = 2;
+  // seconds left + timestamp, ahead of the record of a put
+  private static final int PUT_HEADER_SIZE = Long.BYTES * 2;
+
+  private static final int MIN_COMPACTION_THRESHOLD = 1024;
+  private static final String SNAPSHOT_PREFIX = "prisoners-";
+  private static final String SNAPSHOT_SUFFIX = ".mapped";
+
+  private final BetterJailsPlugin plugin;
+  private final BukkitConfigurationStorage yamlStorage;
+  private final SyncPolicy syncPolicy;
+  private final Path pluginDir;
+  private final Path journalFile;
+  private @Nullable MappedSnapshot snapshot = null;
+  private long generation = 0L;
+  // records written since the snapshot, and prisoners of the snapshot deleted since
+  private final Map<UUID, MappedSnapshot.Entry> newerRecords = new HashMap<>();
+  private final Set<UUID> deleted = new HashSet<>();
+  private @Nullable FileChannel journal = null;
+  private int journalRecords = 0;
+
+  public MappedStorage(final BetterJailsPlugin plugin) {
+    this.plugin = plugin;
+    this.yamlStorage = new BukkitConfigurationStorage(plugin);
+    this.syncPolicy = SyncPolicy.determineSyncPolicy(plugin);
+    this.pluginDir = plugin.getPluginDir();
+    this.journalFile = this.pluginDir.resolve("prisoners.mapped.journal");
+  }
+
+  @Override
+  public void savePrisoner(final ApiPrisoner prisoner) throws IOException {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+    writePut(new DataOutputStream(buffer), prisoner);
+    append(buffer.toByteArray(), 1);
+  }
+
+  @Override
+  public void savePrisoners(final Map<UUID, ApiPrisoner> prisoners) throws IOException {
+    if (prisoners.isEmpty()) {
+      return;
+    }
+
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(prisoners.size() * 256);
+    final DataOutputStream out = new DataOutputStream(buffer);
+    for (final ApiPrisoner prisoner : prisoners.values()) {
+      writePut(out, prisoner);
+    }
+
+    append(buffer.toByteArray(), prisoners.size());
+  }
+
+  @Override
+  public void deletePrisoner(final ApiPrisoner prisoner) throws IOException {
+    final UUID uuid = prisoner.uuid();
+    final boolean inSnapshot = inSnapshot(uuid);
+    if (this.newerRecords.remove(uuid) == null && !inSnapshot) {
+      return;
+    }
+
+    if (inSnapshot) {
+      this.deleted.add(uuid);
+    }
+
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(JournalStorage.RECORD_OVERHEAD + 16);
+    JournalStorage.writeRecord(new DataOutputStream(buffer), OP_DELETE, JournalStorage.uuidBytes(uuid));
+    append(buffer.toByteArray(), 1);
+  }
+
+  /**
+   * Maps the current snapshot and replays the journal on top of it, the returned map decodes prisoners on demand.
+   */
+  @Override
+  public Map<UUID, ApiPrisoner> loadPrisoners() throws IOException {
+    closeJournal();
+    this.snapshot = null;
+    this.generation = 0L;
+    this.newerRecords.clear();
+    this.deleted.clear();
+    this.journalRecords = 0;
+
+    if (Files.notExists(this.journalFile)) {
+      importYamlPrisoners();
+    } else {
+      readJournal();
+    }
+
+    deleteStaleSnapshots();
+    final MappedPrisoners out = new MappedPrisoners(this.plugin, this.snapshot, this.newerRecords, this.deleted, Instant.now());
+    if (shouldCompact()) {
+      compact();
+    }
+
+    return out;
+  }
+
+  @Override
+  public void saveJail(final Jail jail) throws IOException {
+    this.yamlStorage.saveJail(jail);
+  }
+
+  @Override
+  public void saveJails(final Map<String, Jail> jails) throws IOException {
+    this.yamlStorage.saveJails(jails);
+  }
+
+  @Override
+  public void deleteJail(final Jail jail) throws IOException {
+    this.yamlStorage.deleteJail(jail);
+  }
+
+  @Override
+  public Map<String, Jail> loadJails() throws IOException {
+    return this.yamlStorage.loadJails();
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeJournal();
+  }
+
+  private void importYamlPrisoners() throws IOException {
+    final Map<UUID, StoredPrisoner> storedPrisoners = this.yamlStorage.loadStoredPrisoners();
+    if (storedPrisoners.isEmpty()) {
+      resetJournal(0L);
+      return;
+    }
+
+    // the yaml files don't say since when the seconds left are valid, this is what loading them would have assumed
+    final long timestamp = System.currentTimeMillis();
+    final List<MappedSnapshot.Entry> entries = new ArrayList<>(storedPrisoners.size());
+    for (final StoredPrisoner storedPrisoner : storedPrisoners.values()) {
+      final byte[] record = BinaryCodec.encodeStoredPrisoners(Collections.singletonList(storedPrisoner));
+      entries.add(new MappedSnapshot.Entry(storedPrisoner.uuid, storedPrisoner.secondsLeft, timestamp, record));
+    }
+
+    writeSnapshot(entries);
+    LOGGER.info("Imported {} prisoners from the playerdata folder into the prisoner snapshot", storedPrisoners.size());
+    LOGGER.info("The playerdata folder is no longer used and can be removed once you verified the imported data");
+  }
+
+  private void writePut(final DataOutput out, final ApiPrisoner prisoner) throws IOException {
+    final UUID uuid = prisoner.uuid();
+    final StoredPrisoner storedPrisoner = StoredPrisoner.of(prisoner);
+    final long timestamp = prisoner.expiry() instanceof SentenceExpiry.OfExpiryDate ? System.currentTimeMillis() : MappedSnapshot.NOT_RUNNING;
+    final byte[] record = BinaryCodec.encodeStoredPrisoners(Collections.singletonList(storedPrisoner));
+    this.newerRecords.put(uuid, new MappedSnapshot.Entry(uuid, storedPrisoner.secondsLeft, timestamp, record));
+    this.deleted.remove(uuid);
+
+    final ByteBuffer payload = ByteBuffer.allocate(PUT_HEADER_SIZE + record.length);
+    payload.putLong(storedPrisoner.secondsLeft).putLong(timestamp).put(record);
+    JournalStorage.writeRecord(out, OP_PUT, payload.array());
+  }
+
+  private boolean inSnapshot(final UUID uuid) {
+    final MappedSnapshot snapshot = this.snapshot;
+    return snapshot != null && !this.deleted.contains(uuid) && snapshot.find(uuid) >= 0;
+  }
+
+  private void append(final byte[] records, final int recordCount) throws IOException {
+    final FileChannel journal = openJournal();
+    final ByteBuffer buffer = ByteBuffer.wrap(records);
+    while (buffer.hasRemaining()) {
+      journal.write(buffer);
+    }
+
+    // everything written together (a save, or the prisoners coalesced by StorageAccess) shares a single flush
+    if (this.syncPolicy != SyncPolicy.NEVER) {
+      journal.force(false);
+    }
+
+    this.journalRecords += recordCount;
+    if (shouldCompact()) {
+      compact();
+    }
+  }
+
+  private boolean shouldCompact() {
+    final MappedSnapshot snapshot = this.snapshot;
+    final int prisoners = (snapshot == null ? 0 : snapshot.count()) + this.newerRecords.size();
+    return this.journalRecords > Math.max(MIN_COMPACTION_THRESHOLD, prisoners * 2);
+  }
+
+  /**
+   * Writes the current state of every prisoner into a new snapshot generation. Records are copied over as they are,
+   * without decoding them.
+   */
+  private void compact() throws IOException {
+    final List<MappedSnapshot.Entry> entries = new ArrayList<>(this.newerRecords.values());
+    final MappedSnapshot snapshot = this.snapshot;
+    if (snapshot != null) {
+      for (int i = 0; i < snapshot.count(); ++i) {
+        final UUID uuid = snapshot.uuidAt(i);
+        if (!this.deleted.contains(uuid) && !this.newerRecords.containsKey(uuid)) {
+          entries.add(snapshot.entryAt(i));
+        }
+      }
+    }
+
+    writeSnapshot(entries);
+  }
+
+  /**
+   * Writes a new snapshot generation holding the given entries and makes the journal point at it. Until the journal is
+   * replaced the previous snapshot and journal are still the current ones, so a crash in between loses nothing.
+   */
+  private void writeSnapshot(final List<MappedSnapshot.Entry> entries) throws IOException {
+    entries.sort(Comparator.comparing(entry -> entry.uuid));
+    final long generation = this.generation + 1L;
+    final Path snapshotFile = snapshotFile(generation);
+    final Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+    MappedSnapshot.write(tempFile, entries);
+    Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    // the new generation has to be on disk before the journal points at it
+    AtomicFileWriter.syncDirectory(this.pluginDir);
+
+    resetJournal(generation);
+
+    final MappedSnapshot previous = this.snapshot;
+    this.snapshot = MappedSnapshot.open(snapshotFile);
+    this.generation = generation;
+    this.newerRecords.clear();
+    this.deleted.clear();
+    if (previous != null) {
+      deleteSnapshot(previous.file());
+    }
+  }
+
+  /**
+   * Atomically replaces the journal with an empty one pointing at the given snapshot generation.
+   */
+  private void resetJournal(final long generation) throws IOException {
+    closeJournal();
+    final Path tempFile = this.journalFile.resolveSibling(this.journalFile.getFileName() + ".tmp");
+    try (final FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(JOURNAL_MAGIC).putInt(FORMAT_VERSION).putLong(generation).flip();
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+
+      channel.force(true);
+    }
+
+    Files.move(tempFile, this.journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    // and the new journal before the previous generation is deleted
+    AtomicFileWriter.syncDirectory(this.pluginDir);
+    this.journalRecords = 0;
+  }
+
+  /**
+   * Maps the snapshot the journal points at and applies every intact record of the journal on top of it. Anything
+   * after the first torn or corrupt record is cut off the journal.
+   */
+  private void readJournal() throws IOException {
+    final byte[] bytes = Files.readAllBytes(this.journalFile);
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != JOURNAL_MAGIC) {
+      throw new IOException(this.journalFile + " is not a BetterJails prisoner journal");
+    }
+
+    if (buffer.getInt() > FORMAT_VERSION) {
+      throw new IOException(this.journalFile + " is from a newer version of BetterJails, consider updating BetterJails");
+    }
+
+    this.generation = buffer.getLong();
+    if (this.generation > 0L) {
+      this.snapshot = MappedSnapshot.open(snapshotFile(this.generation));
+    }
+
+    int records = 0;
+    final CRC32 crc = new CRC32();
+    while (buffer.remaining() >= JournalStorage.RECORD_OVERHEAD) {
+      final int start = buffer.position();
+      final int length = buffer.getInt();
+      if (length < 0 || buffer.remaining() < length + Byte.BYTES + Integer.BYTES) {
+        LOGGER.warn("Discarding torn record at the end of {}", this.journalFile);
+        truncateJournal(start);
+        this.journalRecords = records;
+        return;
+      }
+
+      final byte op = buffer.get();
+      final int payloadOffset = buffer.position();
+      buffer.position(payloadOffset + length);
+      final int checksum = buffer.getInt();
+
+      crc.reset();
+      crc.update(bytes, payloadOffset - Byte.BYTES, length + Byte.BYTES);
+      if ((int) crc.getValue() != checksum) {
+        LOGGER.warn("Discarding corrupt records at the end of {}", this.journalFile);
+        truncateJournal(start);
+        this.journalRecords = records;
+        return;
+      }
+
+      if (op == OP_PUT) {
+        if (length < PUT_HEADER_SIZE) {
+          throw new IOException("Malformed record in " + this.journalFile);
+        }
+
+        final ByteBuffer header = ByteBuffer.wrap(bytes, payloadOffset, PUT_HEADER_SIZE);
+        final long secondsLeft = header.getLong();
+        final long timestamp = header.getLong();
+        final int recordOffset = payloadOffset + PUT_HEADER_SIZE;
+        final UUID uuid = BinaryCodec.firstPrisonerUuid(bytes, recordOffset, length - PUT_HEADER_SIZE);
+        final byte[] record = Arrays.copyOfRange(bytes, recordOffset, payloadOffset + length);
+        this.newerRecords.put(uuid, new MappedSnapshot.Entry(uuid, secondsLeft, timestamp, record));
+        this.deleted.remove(uuid);
+      } else if (op == OP_DELETE) {
+        final ByteBuffer payload = ByteBuffer.wrap(bytes, payloadOffset, length);
+        final UUID uuid = new UUID(payload.getLong(), payload.getLong());
+        this.newerRecords.remove(uuid);
+        if (inSnapshot(uuid)) {
+          this.deleted.add(uuid);
+        }
+      } else {
+        throw new IOException("Unknown record type " + op + " in " + this.journalFile);
+      }
+
+      ++records;
+    }
+
+    if (buffer.hasRemaining()) {
+      LOGGER.warn("Discarding torn record at the end of {}", this.journalFile);
+      truncateJournal(buffer.position());
+    }
+
+    this.journalRecords = records;
+  }
+
+  private void truncateJournal(final long size) throws IOException {
+    try (final FileChannel channel = FileChannel.open(this.journalFile, StandardOpenOption.WRITE)) {
+      channel.truncate(size);
+    }
+  }
+
+  private FileChannel openJournal() throws IOException {
+    FileChannel journal = this.journal;
+    if (journal == null) {
+      journal = FileChannel.open(this.journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      if (journal.size() < HEADER_SIZE) {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(JOURNAL_MAGIC).putInt(FORMAT_VERSION).putLong(this.generation).flip();
+        journal.truncate(0L);
+        journal.write(header, 0L);
+      }
+
+      journal.position(journal.size());
+      this.journal = journal;
+    }
+
+    return journal;
+  }
+
+  private void closeJournal() throws IOException {
+    final FileChannel journal = this.journal;
+    if (journal != null) {
+      this.journal = null;
+      journal.close();
+    }
+  }
+
+  private Path snapshotFile(final long generation) {
+    return this.pluginDir.resolve(SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX);
+  }
+
+  /**
+   * Deletes every snapshot generation (and leftover temporary file) other than the current one.
+   */
+  private void deleteStaleSnapshots() throws IOException {
+    final MappedSnapshot snapshot = this.snapshot;
+    final List<Path> staleFiles = new ArrayList<>();
+    try (final DirectoryStream<Path> ds = Files.newDirectoryStream(this.pluginDir, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX + "*")) {
+      for (final Path file : ds) {
+        if (snapshot == null || !file.equals(snapshot.file())) {
+          staleFiles.add(file);
+        }
+      }
+    }
+
+    staleFiles.forEach(this::deleteSnapshot);
+  }
+
+  private void deleteSnapshot(final Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (final IOException ex) {
+      // most likely still mapped, it'll be deleted on the next load
+      LOGGER.debug("Could not delete old prisoner snapshot {}", file, ex);
+    }
+  }
+}
@@ -0,0 +1,480 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.interfaces.storage;
+
+import com.github.fefo.betterjails.api.model.jail.Jail;
+import com.github.fefo.betterjails.api.util.ImmutableLocation;
+import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.api.impl.model.jail.ApiJail;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stores prisoners and jails in an SQLite database file ({@code data.db}) using the driver bundled with the server.
+ * <p>
+ * Prisoners are keyed by UUID and indexed by jail name and seconds left, so single prisoners can be updated in place.
+ * Bulk saves are batched in a single transaction. The first time the database is used, the existing {@code playerdata}
+ * folder and {@code jails.yml} are imported into it. The database remembers that, so they are never imported again.
+ */
+public final class SqliteStorage implements StorageInterface {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("BetterJails");
+
+  private static final int SCHEMA_VERSION = 1;
+  private static final char GROUP_SEPARATOR = ',';
+  private static final char GROUP_ESCAPE = '\\';
+  private static final String PRISONERS_IMPORT = "playerdata";
+  private static final String JAILS_IMPORT = "jails.yml";
+
+  private static final String[] CREATE_SCHEMA = {
+      "CREATE TABLE IF NOT EXISTS betterjails_prisoners ("
+      + "uuid CHAR(36) NOT NULL PRIMARY KEY,"
+      + "name VARCHAR(16),"
+      + "jail VARCHAR(255) NOT NULL,"
+      + "jailed_by VARCHAR(255),"
+      + "seconds_left BIGINT NOT NULL,"
+      + "total_sentence_time BIGINT NOT NULL,"
+      + "reason TEXT,"
+      + "last_world VARCHAR(255),"
+      + "last_x DOUBLE, last_y DOUBLE, last_z DOUBLE, last_yaw FLOAT, last_pitch FLOAT,"
+      + "primary_group VARCHAR(255),"
+      + "parent_groups TEXT NOT NULL)",
+      "CREATE INDEX IF NOT EXISTS betterjails_prisoners_jail ON betterjails_prisoners (jail)",
+      "CREATE INDEX IF NOT EXISTS betterjails_prisoners_seconds_left ON betterjails_prisoners (seconds_left)",
+      "CREATE TABLE IF NOT EXISTS betterjails_jails ("
+      + "name VARCHAR(255) NOT NULL PRIMARY KEY,"
+      + "world VARCHAR(255) NOT NULL,"
+      + "x DOUBLE NOT NULL, y DOUBLE NOT NULL, z DOUBLE NOT NULL, yaw FLOAT NOT NULL, pitch FLOAT NOT NULL,"
+      + "release_world VARCHAR(255),"
+      + "release_x DOUBLE, release_y DOUBLE, release_z DOUBLE, release_yaw FLOAT, release_pitch FLOAT)",
+      "CREATE TABLE IF NOT EXISTS betterjails_imports (source VARCHAR(255) NOT NULL PRIMARY KEY)"
+  };
+
+  private static final String UPSERT_PRISONER =
+      "INSERT OR REPLACE INTO betterjails_prisoners "
+      + "(uuid, name, jail, jailed_by, seconds_left, total_sentence_time, reason, last_world, last_x, last_y, last_z, last_yaw, last_pitch, primary_group, parent_groups) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String DELETE_PRISONER = "DELETE FROM betterjails_prisoners WHERE uuid = ?";
+  private static final String SELECT_PRISONERS = "SELECT * FROM betterjails_prisoners";
+
+  private static final String UPSERT_JAIL =
+      "INSERT OR REPLACE INTO betterjails_jails "
+      + "(name, world, x, y, z, yaw, pitch, release_world, release_x, release_y, release_z, release_yaw, release_pitch) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String DELETE_JAIL = "DELETE FROM betterjails_jails WHERE name = ?";
+  private static final String DELETE_ALL_JAILS = "DELETE FROM betterjails_jails";
+  private static final String SELECT_JAILS = "SELECT * FROM betterjails_jails";
+
+  private static final String SELECT_IMPORT = "SELECT 1 FROM betterjails_imports WHERE source = ?";
+  private static final String INSERT_IMPORT = "INSERT OR IGNORE INTO betterjails_imports (source) VALUES (?)";
+
+  private final BetterJailsPlugin plugin;
+  private final BukkitConfigurationStorage yamlStorage;
+  private final Path databaseFile;
+  private @Nullable Connection connection = null;
+
+  public SqliteStorage(final BetterJailsPlugin plugin) {
+    this.plugin = plugin;
+    this.yamlStorage = new BukkitConfigurationStorage(plugin);
+    this.databaseFile = plugin.getPluginDir().resolve("data.db");
+  }
+
+  @Override
+  public void savePrisoner(final ApiPrisoner prisoner) throws SQLException {
+    try (final PreparedStatement statement = connection().prepareStatement(UPSERT_PRISONER)) {
+      bindPrisoner(statement, StoredPrisoner.of(prisoner));
+      statement.executeUpdate();
+    }
+  }
+
+  @Override
+  public void savePrisoners(final Map<UUID, ApiPrisoner> prisoners) throws SQLException {
+    final List<StoredPrisoner> storedPrisoners = new ArrayList<>(prisoners.size());
+    for (final ApiPrisoner prisoner : prisoners.values()) {
+      storedPrisoners.add(StoredPrisoner.of(prisoner));
+    }
+
+    savePrisonersBatched(storedPrisoners);
+  }
+
+  @Override
+  public void deletePrisoner(final ApiPrisoner prisoner) throws SQLException {
+    try (final PreparedStatement statement = connection().prepareStatement(DELETE_PRISONER)) {
+      statement.setString(1, prisoner.uuid().toString());
+      statement.executeUpdate();
+    }
+  }
+
+  @Override
+  public Map<UUID, ApiPrisoner> loadPrisoners() throws IOException, SQLException {
+    importYamlPrisoners();
+
+    final Map<UUID, ApiPrisoner> out = new HashMap<>();
+    try (
+        final Statement statement = connection().createStatement();
+        final ResultSet results = statement.executeQuery(SELECT_PRISONERS)
+    ) {
+      while (results.next()) {
+        final StoredPrisoner storedPrisoner = readPrisoner(results);
+        out.put(storedPrisoner.uuid, storedPrisoner.toPrisoner(this.plugin));
+      }
+    }
+
+    return out;
+  }
+
+  @Override
+  public void saveJail(final Jail jail) throws SQLException {
+    try (final PreparedStatement statement = connection().prepareStatement(UPSERT_JAIL)) {
+      bindJail(statement, jail);
+      statement.executeUpdate();
+    }
+  }
+
+  @Override
+  public void saveJails(final Map<String, Jail> jails) throws SQLException {
+    final Connection connection = connection();
+    inTransaction(connection, () -> {
+      // the given jails are every jail there is, removed jails must go too
+      try (final Statement statement = connection.createStatement()) {
+        statement.executeUpdate(DELETE_ALL_JAILS);
+      }
+
+      try (final PreparedStatement statement = connection.prepareStatement(UPSERT_JAIL)) {
+        for (final Jail jail : jails.values()) {
+          bindJail(statement, jail);
+          statement.addBatch();
+        }
+
+        statement.executeBatch();
+      }
+    });
+  }
+
+  @Override
+  public void deleteJail(final Jail jail) throws SQLException {
+    try (final PreparedStatement statement = connection().prepareStatement(DELETE_JAIL)) {
+      statement.setString(1, jail.name().toLowerCase(Locale.ROOT));
+      statement.executeUpdate();
+    }
+  }
+
+  @Override
+  public Map<String, Jail> loadJails() throws IOException, SQLException {
+    importYamlJails();
+
+    final Map<String, Jail> out = new HashMap<>();
+    try (
+        final Statement statement = connection().createStatement();
+        final ResultSet results = statement.executeQuery(SELECT_JAILS)
+    ) {
+      while (results.next()) {
+        final String name = results.getString("name");
+        final ImmutableLocation location = readLocation(results, "world", "x", "y", "z", "yaw", "pitch");
+        final ImmutableLocation releaseLocation = readLocation(results, "release_world", "release_x", "release_y", "release_z", "release_yaw", "release_pitch");
+        out.put(name, new ApiJail(name, location, releaseLocation));
+      }
+    }
+
+    return out;
+  }
+
+  @Override
+  public void close() throws SQLException {
+    final Connection connection = this.connection;
+    if (connection != null) {
+      this.connection = null;
+      connection.close();
+    }
+  }
+
+  private Connection connection() throws SQLException {
+    Connection connection = this.connection;
+    if (connection == null) {
+      try {
+        // older drivers are not picked up by the service loader
+        Class.forName("org.sqlite.JDBC");
+      } catch (final ClassNotFoundException ex) {
+        throw new SQLException("The SQLite driver is not available on this server", ex);
+      }
+
+      connection = DriverManager.getConnection("jdbc:sqlite:" + this.databaseFile.toAbsolutePath());
+      try (final Statement statement = connection.createStatement()) {
+        for (final String sql : CREATE_SCHEMA) {
+          statement.executeUpdate(sql);
+        }
+
+        statement.executeUpdate("PRAGMA user_version = " + SCHEMA_VERSION);
+      }
+
+      this.connection = connection;
+    }
+
+    return connection;
+  }
+
+  private void importYamlPrisoners() throws IOException, SQLException {
+    final Connection connection = connection();
+    if (wasImported(connection, PRISONERS_IMPORT)) {
+      return;
+    }
+
+    final Map<UUID, StoredPrisoner> storedPrisoners = this.yamlStorage.loadStoredPrisoners();
+    inTransaction(connection, () -> {
+      insertPrisoners(connection, storedPrisoners.values());
+      markImported(connection, PRISONERS_IMPORT);
+    });
+
+    if (!storedPrisoners.isEmpty()) {
+      LOGGER.info("Imported {} prisoners from the playerdata folder into the database", storedPrisoners.size());
+      LOGGER.info("The playerdata folder is no longer used and can be removed once you verified the imported data");
+    }
+  }
+
+  private void importYamlJails() throws IOException, SQLException {
+    final Connection connection = connection();
+    if (wasImported(connection, JAILS_IMPORT)) {
+      return;
+    }
+
+    final Map<String, Jail> yamlJails = this.yamlStorage.loadJails();
+    inTransaction(connection, () -> {
+      try (final PreparedStatement statement = connection.prepareStatement(UPSERT_JAIL)) {
+        for (final Jail jail : yamlJails.values()) {
+          bindJail(statement, jail);
+          statement.addBatch();
+        }
+
+        statement.executeBatch();
+      }
+
+      markImported(connection, JAILS_IMPORT);
+    });
+
+    if (!yamlJails.isEmpty()) {
+      LOGGER.info("Imported {} jails from jails.yml into the database", yamlJails.size());
+    }
+  }
+
+  private static boolean wasImported(final Connection connection, final String source) throws SQLException {
+    try (final PreparedStatement statement = connection.prepareStatement(SELECT_IMPORT)) {
+      statement.setString(1, source);
+      try (final ResultSet results = statement.executeQuery()) {
+        return results.next();
+      }
+    }
+  }
+
+  private static void markImported(final Connection connection, final String source) throws SQLException {
+    try (final PreparedStatement statement = connection.prepareStatement(INSERT_IMPORT)) {
+      statement.setString(1, source);
+      statement.executeUpdate();
+    }
+  }
+
+  private void savePrisonersBatched(final Collection<StoredPrisoner> prisoners) throws SQLException {
+    if (prisoners.isEmpty()) {
+      return;
+    }
+
+    final Connection connection = connection();
+    inTransaction(connection, () -> insertPrisoners(connection, prisoners));
+  }
+
+  private static void insertPrisoners(final Connection connection, final Collection<StoredPrisoner> prisoners) throws SQLException {
+    try (final PreparedStatement statement = connection.prepareStatement(UPSERT_PRISONER)) {
+      for (final StoredPrisoner prisoner : prisoners) {
+        bindPrisoner(statement, prisoner);
+        statement.addBatch();
+      }
+
+      statement.executeBatch();
+    }
+  }
+
+  private static void inTransaction(final Connection connection, final SqlTask task) throws SQLException {
+    connection.setAutoCommit(false);
+    try {
+      task.run();
+      connection.commit();
+    } catch (final SQLException | RuntimeException ex) {
+      connection.rollback();
+      throw ex;
+    } finally {
+      connection.setAutoCommit(true);
+    }
+  }
+
+  private static void bindPrisoner(final PreparedStatement statement, final StoredPrisoner prisoner) throws SQLException {
+    statement.setString(1, prisoner.uuid.toString());
+    statement.setString(2, prisoner.name);
+    statement.setString(3, prisoner.jailName);
+    statement.setString(4, prisoner.jailedBy);
+    statement.setLong(5, prisoner.secondsLeft);
+    statement.setLong(6, prisoner.totalSentenceSeconds);
+    statement.setString(7, prisoner.reason);
+    bindLocation(statement, 8, prisoner.lastLocation);
+    statement.setString(14, prisoner.primaryGroup);
+    statement.setString(15, joinGroups(prisoner.parentGroups));
+  }
+
+  private static StoredPrisoner readPrisoner(final ResultSet results) throws SQLException {
+    final String parentGroups = results.getString("parent_groups");
+    return new StoredPrisoner(
+        UUID.fromString(results.getString("uuid")),
+        results.getString("name"),
+        results.getString("jail"),
+        results.getString("jailed_by"),
+        results.getLong("seconds_left"),
+        results.getLong("total_sentence_time"),
+        results.getString("reason"),
+        readLocation(results, "last_world", "last_x", "last_y", "last_z", "last_yaw", "last_pitch"),
+        results.getString("primary_group"),
+        splitGroups(parentGroups == null ? "" : parentGroups)
+    );
+  }
+
+  /**
+   * Joins group names with commas, commas and backslashes in the names are escaped with a backslash.
+   */
+  private static String joinGroups(final Collection<String> groups) {
+    final StringBuilder builder = new StringBuilder();
+    for (final String group : groups) {
+      if (builder.length() != 0) {
+        builder.append(GROUP_SEPARATOR);
+      }
+
+      for (int i = 0; i < group.length(); ++i) {
+        final char c = group.charAt(i);
+        if (c == GROUP_SEPARATOR || c == GROUP_ESCAPE) {
+          builder.append(GROUP_ESCAPE);
+        }
+
+        builder.append(c);
+      }
+    }
+
+    return builder.toString();
+  }
+
+  private static List<String> splitGroups(final String joinedGroups) {
+    final List<String> groups = new ArrayList<>();
+    final StringBuilder group = new StringBuilder();
+    for (int i = 0; i < joinedGroups.length(); ++i) {
+      final char c = joinedGroups.charAt(i);
+      if (c == GROUP_ESCAPE && i + 1 < joinedGroups.length()) {
+        group.append(joinedGroups.charAt(++i));
+      } else if (c == GROUP_SEPARATOR) {
+        addGroup(groups, group);
+      } else {
+        group.append(c);
+      }
+    }
+
+    addGroup(groups, group);
+    return groups;
+  }
+
+  private static void addGroup(final List<String> groups, final StringBuilder group) {
+    if (group.length() != 0) {
+      groups.add(group.toString());
+      group.setLength(0);
+    }
+  }
+
+  private static void bindJail(final PreparedStatement statement, final Jail jail) throws SQLException {
+    statement.setString(1, jail.name().toLowerCase(Locale.ROOT));
+    bindLocation(statement, 2, jail.location());
+    bindLocation(statement, 8, jail.releaseLocation());
+  }
+
+  private static void bindLocation(final PreparedStatement statement, final int index, final @Nullable ImmutableLocation location) throws SQLException {
+    if (location == null) {
+      statement.setNull(index, Types.VARCHAR);
+      statement.setNull(index + 1, Types.DOUBLE);
+      statement.setNull(index + 2, Types.DOUBLE);
+      statement.setNull(index + 3, Types.DOUBLE);
+      statement.setNull(index + 4, Types.FLOAT);
+      statement.setNull(index + 5, Types.FLOAT);
+    } else {
+      statement.setString(index, location.getWorldName());
+      statement.setDouble(index + 1, location.getX());
+      statement.setDouble(index + 2, location.getY());
+      statement.setDouble(index + 3, location.getZ());
+      statement.setFloat(index + 4, location.getYaw());
+      statement.setFloat(index + 5, location.getPitch());
+    }
+  }
+
+  private static @Nullable ImmutableLocation readLocation(
+      final ResultSet results,
+      final String worldColumn,
+      final String xColumn,
+      final String yColumn,
+      final String zColumn,
+      final String yawColumn,
+      final String pitchColumn
+  ) throws SQLException {
+    final String world = results.getString(worldColumn);
+    if (world == null) {
+      return null;
+    }
+
+    final Map<String, Object> serializedLocation = new LinkedHashMap<>();
+    serializedLocation.put("world", world);
+    serializedLocation.put("x", results.getDouble(xColumn));
+    serializedLocation.put("y", results.getDouble(yColumn));
+    serializedLocation.put("z", results.getDouble(zColumn));
+    serializedLocation.put("yaw", results.getFloat(yawColumn));
+    serializedLocation.put("pitch", results.getFloat(pitchColumn));
+    return ImmutableLocation.deserialize(serializedLocation);
+  }
+
+  @FunctionalInterface
+  private interface SqlTask {
+
+    void run() throws SQLException;
+  }
+}
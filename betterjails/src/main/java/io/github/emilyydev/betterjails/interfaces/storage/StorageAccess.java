@@ -28,98 +28,204 @@ import com.github.fefo.betterjails.api.model.jail.Jail;
 import com.google.common.collect.ImmutableMap;
 import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Gates access to the StorageInterface via a single-threaded executor service,
  * given that all operations on StorageInterface are blocking and synchronous, accessing them exclusively on
  * a single thread, every operation is queued and atomic with respect to each other.
  * It also ensures that all collections passed (maps, lists, etc.) are cloned before passing them around.
+ * <p>
+ * The storage interface itself is only created when the first operation runs on the I/O thread, so the configured
+ * storage type can be read after the configuration is loaded.
+ * <p>
+ * Single prisoner saves and deletes are not written right away, they are held for a short window and merged per
+ * prisoner, so only the latest operation for each prisoner is written and all the saves are written as one batch.
+ * Any other operation flushes the pending writes first, so the order in which operations were requested is kept.
  */
 public final class StorageAccess implements AutoCloseable {
 
-  private final StorageInterface storageInterface;
-  private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(task -> {
+  private static final long COALESCE_WINDOW_MILLIS = 50L;
+
+  private final Supplier<? extends StorageInterface> storageInterfaceFactory;
+  private StorageInterface storageInterface = null; // only accessed from the I/O thread
+  private final ScheduledExecutorService ioExecutor = Executors.newSingleThreadScheduledExecutor(task -> {
     final Thread t = new Thread(task, "BetterJails I/O Thread");
     t.setPriority(Thread.MIN_PRIORITY);
     t.setDaemon(false);
     return t;
   });
 
-  public StorageAccess(final StorageInterface storageInterface) {
-    this.storageInterface = storageInterface;
+  // guarded by this
+  private Map<UUID, PendingWrite> pendingWrites = new LinkedHashMap<>();
+  private boolean flushScheduled = false;
+
+  public StorageAccess(final Supplier<? extends StorageInterface> storageInterfaceFactory) {
+    this.storageInterfaceFactory = storageInterfaceFactory;
   }
 
   public CompletableFuture<Void> savePrisoner(final ApiPrisoner prisoner) {
-    return submit(() -> this.storageInterface.savePrisoner(prisoner));
+    return enqueue(prisoner, false);
   }
 
   public CompletableFuture<Void> savePrisoners(final Map<UUID, ApiPrisoner> prisoners) {
     final Map<UUID, ApiPrisoner> copy = ImmutableMap.copyOf(prisoners);
-    return submit(() -> this.storageInterface.savePrisoners(copy));
+    return submit(() -> storageInterface().savePrisoners(copy));
   }
 
   public CompletableFuture<Void> deletePrisoner(final ApiPrisoner prisoner) {
-    return submit(() -> this.storageInterface.deletePrisoner(prisoner));
+    return enqueue(prisoner, true);
   }
 
   public CompletableFuture<Map<UUID, ApiPrisoner>> loadPrisoners() {
-    return submit(this.storageInterface::loadPrisoners);
+    return submit(() -> storageInterface().loadPrisoners());
   }
 
   public CompletableFuture<Void> saveJail(final Jail jail) {
-    return submit(() -> this.storageInterface.saveJail(jail));
+    return submit(() -> storageInterface().saveJail(jail));
   }
 
   public CompletableFuture<Void> saveJails(final Map<String, Jail> jails) {
     final Map<String, Jail> copy = ImmutableMap.copyOf(jails);
-    return submit(() -> this.storageInterface.saveJails(copy));
+    return submit(() -> storageInterface().saveJails(copy));
   }
 
   public CompletableFuture<Void> deleteJail(final Jail jail) {
-    return submit(() -> this.storageInterface.deleteJail(jail));
+    return submit(() -> storageInterface().deleteJail(jail));
   }
 
   public CompletableFuture<Map<String, Jail>> loadJails() {
-    return submit(this.storageInterface::loadJails);
+    return submit(() -> storageInterface().loadJails());
   }
 
   @Override
   public void close() throws InterruptedException {
+    submit(() -> {
+      if (this.storageInterface != null) {
+        this.storageInterface.close();
+      }
+    });
     this.ioExecutor.shutdown();
     if (!this.ioExecutor.awaitTermination(30L, TimeUnit.SECONDS)) {
       this.ioExecutor.shutdownNow();
     }
   }
 
-  private CompletableFuture<Void> submit(final ThrowingRunnable task) {
+  private StorageInterface storageInterface() {
+    StorageInterface storageInterface = this.storageInterface;
+    if (storageInterface == null) {
+      storageInterface = this.storageInterface = this.storageInterfaceFactory.get();
+    }
+
+    return storageInterface;
+  }
+
+  private synchronized CompletableFuture<Void> enqueue(final ApiPrisoner prisoner, final boolean delete) {
     final CompletableFuture<Void> future = new CompletableFuture<>();
-    this.ioExecutor.execute(() -> {
-      try {
-        task.run();
-        future.complete(null);
-      } catch (final Exception ex) {
-        future.completeExceptionally(ex);
+    final PendingWrite pendingWrite = this.pendingWrites.get(prisoner.uuid());
+    if (pendingWrite == null) {
+      this.pendingWrites.put(prisoner.uuid(), new PendingWrite(prisoner, delete, future));
+    } else {
+      // supersedes whatever was pending for this prisoner
+      pendingWrite.prisoner = prisoner;
+      pendingWrite.delete = delete;
+      pendingWrite.futures.add(future);
+    }
+
+    if (!this.flushScheduled) {
+      this.flushScheduled = true;
+      this.ioExecutor.schedule(this::flushPendingWrites, COALESCE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    return future;
+  }
+
+  private synchronized Map<UUID, PendingWrite> drainPendingWrites() {
+    final Map<UUID, PendingWrite> pendingWrites = this.pendingWrites;
+    if (!pendingWrites.isEmpty()) {
+      this.pendingWrites = new LinkedHashMap<>();
+    }
+
+    this.flushScheduled = false;
+    return pendingWrites;
+  }
+
+  // I/O thread only
+  private void flushPendingWrites() {
+    writePending(drainPendingWrites());
+  }
+
+  // I/O thread only
+  private void writePending(final Map<UUID, PendingWrite> pendingWrites) {
+    if (pendingWrites.isEmpty()) {
+      return;
+    }
+
+    final Map<UUID, ApiPrisoner> saves = new LinkedHashMap<>();
+    final List<CompletableFuture<Void>> saveFutures = new ArrayList<>();
+    for (final PendingWrite pendingWrite : pendingWrites.values()) {
+      if (pendingWrite.delete) {
+        try {
+          storageInterface().deletePrisoner(pendingWrite.prisoner);
+          pendingWrite.complete(null);
+        } catch (final Exception ex) {
+          pendingWrite.complete(ex);
+        }
+      } else {
+        saves.put(pendingWrite.prisoner.uuid(), pendingWrite.prisoner);
+        saveFutures.addAll(pendingWrite.futures);
       }
+    }
+
+    if (saves.isEmpty()) {
+      return;
+    }
+
+    try {
+      if (saves.size() == 1) {
+        storageInterface().savePrisoner(saves.values().iterator().next());
+      } else {
+        storageInterface().savePrisoners(saves);
+      }
+
+      saveFutures.forEach(future -> future.complete(null));
+    } catch (final Exception ex) {
+      saveFutures.forEach(future -> future.completeExceptionally(ex));
+    }
+  }
+
+  private CompletableFuture<Void> submit(final ThrowingRunnable task) {
+    return submit(() -> {
+      task.run();
+      return null;
     });
-    return future;
   }
 
   private <T> CompletableFuture<T> submit(final Callable<T> task) {
     final CompletableFuture<T> future = new CompletableFuture<>();
-    this.ioExecutor.execute(() -> {
-      try {
-        future.complete(task.call());
-      } catch (final Exception ex) {
-        future.completeExceptionally(ex);
-      }
-    });
+    // pending writes were requested before this task and have to be written before it
+    synchronized (this) {
+      final Map<UUID, PendingWrite> pendingWrites = drainPendingWrites();
+      this.ioExecutor.execute(() -> {
+        writePending(pendingWrites);
+        try {
+          future.complete(task.call());
+        } catch (final Exception ex) {
+          future.completeExceptionally(ex);
+        }
+      });
+    }
+
     return future;
   }
 
@@ -128,4 +234,27 @@ public final class StorageAccess implements AutoCloseable {
 
     void run() throws Exception;
   }
+
+  private static final class PendingWrite {
+
+    ApiPrisoner prisoner;
+    boolean delete;
+    final List<CompletableFuture<Void>> futures = new ArrayList<>(1);
+
+    PendingWrite(final ApiPrisoner prisoner, final boolean delete, final CompletableFuture<Void> future) {
+      this.prisoner = prisoner;
+      this.delete = delete;
+      this.futures.add(future);
+    }
+
+    void complete(final Exception ex) {
+      for (final CompletableFuture<Void> future : this.futures) {
+        if (ex == null) {
+          future.complete(null);
+        } else {
+          future.completeExceptionally(ex);
+        }
+      }
+    }
+  }
 }
@@ -25,12 +25,35 @@
 package io.github.emilyydev.betterjails.interfaces.storage;
 
 import com.github.fefo.betterjails.api.model.jail.Jail;
+import io.github.emilyydev.betterjails.BetterJailsPlugin;
 import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import org.slf4j.LoggerFactory;
 
 import java.util.Map;
 import java.util.UUID;
 
-public interface StorageInterface {
+public interface StorageInterface extends AutoCloseable {
+
+  static StorageInterface determineStorageInterface(final BetterJailsPlugin plugin) {
+    final String storageType = plugin.configuration().storageType();
+    switch (storageType) {
+      case "journal":
+        return new JournalStorage(plugin);
+
+      case "mapped":
+        return new MappedStorage(plugin);
+
+      case "sqlite":
+        return new SqliteStorage(plugin);
+
+      case "yaml":
+        return new BukkitConfigurationStorage(plugin);
+
+      default:
+        LoggerFactory.getLogger("BetterJails").warn("Unknown storage type \"{}\", falling back to yaml", storageType);
+        return new BukkitConfigurationStorage(plugin);
+    }
+  }
 
   void savePrisoner(ApiPrisoner prisoner) throws Exception;
   void savePrisoners(Map<UUID, ApiPrisoner> prisoners) throws Exception;
@@ -42,6 +65,10 @@ public interface StorageInterface {
   void deleteJail(Jail jail) throws Exception;
   Map<String, Jail> loadJails() throws Exception;
 
+  @Override
+  default void close() throws Exception {
+  }
+
   // TODO(rymiel): There's asymmetry between these: ApiPrisoner vs Jail, this is because not all data needed here
   //   is stored in Prisoner. Perhaps some stuff from ApiPrisoner should be exposed in Prisoner.
 }
@@ -0,0 +1,163 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.interfaces.storage;
+
+import com.github.fefo.betterjails.api.model.jail.Jail;
+import com.github.fefo.betterjails.api.util.ImmutableLocation;
+import com.google.common.collect.ImmutableList;
+import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.SentenceExpiry;
+import io.github.emilyydev.betterjails.config.BetterJailsConfiguration;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The persisted form of a prisoner, independent of the storage format. Sentence time is stored as seconds left, the
+ * jail by name, and the last location is {@code null} when unknown.
+ */
+final class StoredPrisoner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("BetterJails");
+
+  static StoredPrisoner of(final ApiPrisoner prisoner) {
+    return new StoredPrisoner(
+        prisoner.uuid(),
+        prisoner.name(),
+        prisoner.jail().name().toLowerCase(Locale.ROOT),
+        prisoner.jailedBy(),
+        prisoner.timeLeft().getSeconds(),
+        prisoner.totalSentenceTime().getSeconds(),
+        prisoner.imprisonmentReason(),
+        prisoner.lastLocationNullable(),
+        prisoner.primaryGroup(),
+        prisoner.parentGroups()
+    );
+  }
+
+  final UUID uuid;
+  final @Nullable String name;
+  final String jailName;
+  final @Nullable String jailedBy;
+  final long secondsLeft;
+  final long totalSentenceSeconds;
+  final @Nullable String reason;
+  final @Nullable ImmutableLocation lastLocation;
+  final @Nullable String primaryGroup;
+  final List<String> parentGroups;
+
+  StoredPrisoner(
+      final UUID uuid,
+      final @Nullable String name,
+      final String jailName,
+      final @Nullable String jailedBy,
+      final long secondsLeft,
+      final long totalSentenceSeconds,
+      final @Nullable String reason,
+      final @Nullable ImmutableLocation lastLocation,
+      final @Nullable String primaryGroup,
+      final Collection<? extends String> parentGroups
+  ) {
+    this.uuid = uuid;
+    this.name = name;
+    this.jailName = jailName;
+    this.jailedBy = jailedBy;
+    this.secondsLeft = secondsLeft;
+    this.totalSentenceSeconds = totalSentenceSeconds;
+    this.reason = reason;
+    this.lastLocation = lastLocation;
+    this.primaryGroup = primaryGroup;
+    this.parentGroups = ImmutableList.copyOf(parentGroups);
+  }
+
+  /**
+   * Resolves this record into a prisoner, jails must already be loaded.
+   */
+  ApiPrisoner toPrisoner(final BetterJailsPlugin plugin) {
+    return toPrisoner(plugin, Instant.now());
+  }
+
+  /**
+   * Turns this record into a prisoner in the given jail whose sentence is paused. The location is used in place of their
+   * last location if it is unknown.
+   */
+  ApiPrisoner toPausedPrisoner(final Jail jail, final @Nullable ImmutableLocation unknownLocation) {
+    final boolean locationUnknown = this.lastLocation == null;
+    return new ApiPrisoner(
+        this.uuid, this.name, this.primaryGroup, this.parentGroups, jail, this.jailedBy,
+        SentenceExpiry.of(Duration.ofSeconds(this.secondsLeft)), Duration.ofSeconds(this.totalSentenceSeconds),
+        this.reason, locationUnknown ? Objects.requireNonNull(unknownLocation, "unknownLocation") : this.lastLocation, locationUnknown
+    );
+  }
+
+  /**
+   * Resolves this record into a prisoner as if it was loaded at the given instant, which is when time starts running
+   * again for prisoners whose time is running.
+   */
+  ApiPrisoner toPrisoner(final BetterJailsPlugin plugin, final Instant loadedAt) {
+    final BetterJailsConfiguration config = plugin.configuration();
+    Jail jail = plugin.jailData().getJail(this.jailName);
+    if (jail == null) {
+      // If the jail has been removed, just fall back to the first jail in the config. If there are no jails, this
+      // will throw an exception, but why would you have no jails?
+      jail = plugin.jailData().getJails().values().iterator().next();
+      LOGGER.warn("Jail {} does not exist", this.jailName);
+      LOGGER.warn("Player {}/{} was attempted to relocate to {}", this.name, this.uuid, jail.name());
+    }
+
+    // TODO(v2): We have to set some location here, due to @NotNull API contract in Prisoner. It should be made
+    //  nullable eventually, since backupLocation no longer carries any significance.
+    final boolean unknownLocation = this.lastLocation == null;
+    final ImmutableLocation lastLocation = unknownLocation ? config.backupLocation() : this.lastLocation;
+
+    final Duration timeLeft = Duration.ofSeconds(this.secondsLeft);
+    final boolean isPlayerOnline = plugin.getServer().getPlayer(this.uuid) != null; // This is only relevant for reloading
+
+    final SentenceExpiry expiry;
+    if (config.considerOfflineTime() || isPlayerOnline) {
+      // If considering offline time, or if the player is online, the player will have a "deadline", jailedUntil,
+      // whereas timeLeft would be constantly changing.
+      expiry = SentenceExpiry.of(loadedAt.plus(timeLeft));
+    } else {
+      // If not considering offline time, all players currently have a remaining time, timeLeft, but when they'd
+      // be released, jailedUntil, will remain unknown until the player actually joins.
+      expiry = SentenceExpiry.of(timeLeft);
+    }
+
+    return new ApiPrisoner(
+        this.uuid, this.name, this.primaryGroup, this.parentGroups, jail, this.jailedBy, expiry,
+        Duration.ofSeconds(this.totalSentenceSeconds), this.reason, lastLocation, unknownLocation
+    );
+  }
+}
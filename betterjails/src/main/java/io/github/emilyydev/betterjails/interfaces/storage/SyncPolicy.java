@@ -0,0 +1,68 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.interfaces.storage;
+
+import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import org.slf4j.LoggerFactory;
+
+/**
+ * When files written by storage are flushed to disk. Journals are appended to in groups of records, each group is
+ * flushed at once with both {@link #ALWAYS} and {@link #BATCH}.
+ */
+enum SyncPolicy {
+
+  /**
+   * Every file is flushed as soon as it's written.
+   */
+  ALWAYS,
+
+  /**
+   * Every file is still flushed on its own, but files written together share the sync of the directory they're in.
+   */
+  BATCH,
+
+  /**
+   * Files are never explicitly flushed, they are still replaced atomically.
+   */
+  NEVER;
+
+  static SyncPolicy determineSyncPolicy(final BetterJailsPlugin plugin) {
+    final String syncPolicy = plugin.configuration().storageSync();
+    switch (syncPolicy) {
+      case "always":
+        return ALWAYS;
+
+      case "batch":
+        return BATCH;
+
+      case "never":
+        return NEVER;
+
+      default:
+        LoggerFactory.getLogger("BetterJails").warn("Unknown storage sync policy \"{}\", falling back to never", syncPolicy);
+        return NEVER;
+    }
+  }
+}
@@ -29,24 +29,33 @@ import com.earth2me.essentials.User;
 import com.github.fefo.betterjails.api.util.ImmutableLocation;
 import io.github.emilyydev.betterjails.BetterJailsPlugin;
 import io.github.emilyydev.betterjails.UpdateChecker;
+import io.github.emilyydev.betterjails.api.impl.model.jail.ApiJail;
 import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
 import io.github.emilyydev.betterjails.config.SubCommandsConfiguration;
+import io.github.emilyydev.betterjails.util.Teleport;
 import io.github.emilyydev.betterjails.util.Util;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.plugin.PluginManager;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spigotmc.event.player.PlayerSpawnLocationEvent;
 
+import java.time.Duration;
 import java.util.UUID;
 
 public final class PlayerListeners implements Listener {
 
   private static final Logger LOGGER = LoggerFactory.getLogger("BetterJails");
+  private static final Duration DATA_LOAD_TIMEOUT = Duration.ofSeconds(30L);
+  // how long a preloaded spawn chunk is kept loaded, logging in rarely takes this long
+  private static final long PRELOADED_CHUNK_TICKS = 30L * 20L;
 
   public static PlayerListeners create(final BetterJailsPlugin plugin) {
     return new PlayerListeners(plugin);
@@ -60,6 +69,10 @@ public final class PlayerListeners implements Listener {
 
   public void register() {
     final PluginManager pluginManager = this.plugin.getServer().getPluginManager();
+    pluginManager.registerEvent(
+        AsyncPlayerPreLoginEvent.class, this, EventPriority.LOW,
+        (l, e) -> playerPreLogin((AsyncPlayerPreLoginEvent) e), this.plugin
+    );
     pluginManager.registerEvent(
         PlayerSpawnLocationEvent.class, this, EventPriority.HIGH,
         (l, e) -> playerSpawn((PlayerSpawnLocationEvent) e), this.plugin
@@ -74,6 +87,47 @@ public final class PlayerListeners implements Listener {
     );
   }
 
+  private void playerPreLogin(final AsyncPlayerPreLoginEvent event) {
+    if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+      return;
+    }
+
+    // prisoner data is loaded in the background on startup, hold logins until it's there so nobody skips their sentence
+    if (!this.plugin.prisonerData().awaitLoaded(DATA_LOAD_TIMEOUT)) {
+      event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, Util.color("&cThe server is still starting up, please try again in a moment."));
+      return;
+    }
+
+    // Looking the prisoner up here gets it ready (dormant prisoners are decoded) off the main thread, and lets the chunk
+    // they'll spawn in start loading before they get there. Exempt players are only known once they spawn, they're
+    // rare enough to not preload for.
+    final ApiPrisoner prisoner = this.plugin.prisonerData().getPrisoner(event.getUniqueId());
+    if (prisoner == null) {
+      return;
+    }
+
+    final ImmutableLocation spawnLocation = prisoner.released() ? releaseLocation(prisoner) : prisoner.jail().location();
+    if (spawnLocation != null) {
+      this.plugin.getServer().getScheduler().runTask(this.plugin, () -> {
+        // ImmutableLocation#mutable throws if the world isn't there, the spawn handler deals with that on its own
+        if (this.plugin.getServer().getWorld(spawnLocation.getWorldName()) != null) {
+          final Location location = spawnLocation.mutable();
+          // nothing would stop the server from unloading it again before the player spawns
+          Teleport.preloadChunk(location).thenAcceptAsync(chunk -> {
+            if (chunk != null) {
+              this.plugin.jailData().holdChunk(location, PRELOADED_CHUNK_TICKS);
+            }
+          }, this.plugin);
+        }
+      });
+    }
+  }
+
+  private static @Nullable ImmutableLocation releaseLocation(final ApiPrisoner prisoner) {
+    final ImmutableLocation releaseLocation = prisoner.jail().releaseLocation();
+    return releaseLocation != null ? releaseLocation : prisoner.lastLocationNullable();
+  }
+
   private void playerSpawn(final PlayerSpawnLocationEvent event) {
     final Player player = event.getPlayer();
     final UUID uuid = player.getUniqueId();
@@ -84,9 +138,9 @@ public final class PlayerListeners implements Listener {
         // The player has been released...
         // put them back where they were if there is no release location, and at the release location otherwise
         final ImmutableLocation lastLocation = prisoner.lastLocationNullable();
-        final ImmutableLocation releaseLocation = prisoner.jail().releaseLocation();
+        final Location releaseLocation = ApiJail.mutableReleaseLocationOf(prisoner.jail());
         if (releaseLocation != null) {
-          event.setSpawnLocation(releaseLocation.mutable());
+          event.setSpawnLocation(releaseLocation);
         } else if (lastLocation != null) {
           event.setSpawnLocation(lastLocation.mutable());
         }
@@ -100,8 +154,8 @@ public final class PlayerListeners implements Listener {
           final String jailedBy = prisoner.jailedBy() == null ? "" : prisoner.jailedBy();
           this.plugin.getServer().getScheduler().runTaskLater(this.plugin, () -> {
             final SubCommandsConfiguration.SubCommands subCommands = this.plugin.subCommands().onJail();
-            subCommands.executeAsPrisoner(this.plugin.getServer(), player, jailedBy);
-            subCommands.executeAsConsole(this.plugin.getServer(), player, jailedBy);
+            subCommands.executeAsPrisoner(this.plugin.subCommandDispatcher(), player, jailedBy);
+            subCommands.executeAsConsole(this.plugin.subCommandDispatcher(), player, jailedBy);
           }, 1);
         }
 
@@ -110,7 +164,7 @@ public final class PlayerListeners implements Listener {
           LOGGER.error("An error occurred saving data for prisoner {}", uuid, error);
           return null;
         });
-        event.setSpawnLocation(prisoner.jail().location().mutable());
+        event.setSpawnLocation(ApiJail.mutableLocationOf(prisoner.jail()));
       }
     }
 
@@ -153,7 +207,7 @@ public final class PlayerListeners implements Listener {
     final ApiPrisoner prisoner = this.plugin.prisonerData().getPrisoner(uuid);
 
     if (prisoner != null) {
-      event.setRespawnLocation(prisoner.jail().location().mutable());
+      event.setRespawnLocation(ApiJail.mutableLocationOf(prisoner.jail()));
     }
   }
 }
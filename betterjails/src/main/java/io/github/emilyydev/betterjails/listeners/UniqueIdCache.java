@@ -31,41 +31,293 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Case-insensitive player name to unique ID index.
+ * <p>
+ * Player names ({@code [a-zA-Z0-9_]}, up to 16 characters) are packed into two longs and stored along with the UUID
+ * halves in an open addressing table made of primitive arrays, so each name takes a few dozen bytes instead of a
+ * string, a UUID object and a map node. The few names that don't fit are kept in a regular map.
+ * <p>
+ * When more than one player used the same name, the one seen most recently wins.
+ */
 public final class UniqueIdCache implements Listener {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger("BetterJails");
   private static final UUID NIL_UUID = new UUID(0L, 0L);
 
-  private final Map<String, UUID> cache = new HashMap<>();
+  private static final int INITIAL_CAPACITY = 1024; // must be a power of two
+  private static final int PACKED_CHUNK_LENGTH = 8;
+  private static final int MAX_PACKED_NAME_LENGTH = 2 * PACKED_CHUNK_LENGTH;
+  // 0 is never a character, so names of different lengths never pack the same; 38^8 fits in a long
+  private static final long RADIX = 38L;
+  private static final long NOT_PACKABLE = -1L;
+  // how long the warm-up may take out of each tick
+  private static final long WARM_UP_NANOS_PER_TICK = TimeUnit.MILLISECONDS.toNanos(2L);
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  // guarded by lock. A slot is empty when its nameLow is 0, which a packed non-empty name never is
+  private long[] nameLow = new long[INITIAL_CAPACITY];
+  private long[] nameHigh = new long[INITIAL_CAPACITY];
+  private long[] uuidMost = new long[INITIAL_CAPACITY];
+  private long[] uuidLeast = new long[INITIAL_CAPACITY];
+  private long[] lastSeen = new long[INITIAL_CAPACITY];
+  private int size = 0;
+  private final Map<String, Entry> otherNames = new HashMap<>();
+
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+  private volatile boolean warmedUp = false;
 
   public void register(final BetterJailsPlugin plugin) {
     final Server server = plugin.getServer();
-    for (final OfflinePlayer offlinePlayer : server.getOfflinePlayers()) {
-      final String name = offlinePlayer.getName();
-      if (name != null) {
-        this.cache.put(name.toLowerCase(Locale.ROOT), offlinePlayer.getUniqueId());
-      }
-    }
-
     server.getPluginManager().registerEvent(
         PlayerLoginEvent.class, this, EventPriority.MONITOR,
         (l, e) -> playerLogin((PlayerLoginEvent) e), plugin
     );
+
+    // reading the name and last played time of every known player can take a while on servers with a long history.
+    // The server can only be asked for them on the main thread, so it's spread over as many ticks as needed. Players
+    // logging in meanwhile are added by the listener and are more recent than anything the warm-up finds
+    new WarmUp(server.getOfflinePlayers()).runTaskTimer(plugin, 1L, 1L);
   }
 
   public UUID findUniqueId(final String name) {
-    return this.cache.getOrDefault(name.toLowerCase(Locale.ROOT), NIL_UUID);
+    this.lookups.increment();
+    final UUID uuid = get(name);
+    if (uuid == null) {
+      return NIL_UUID;
+    }
+
+    this.hits.increment();
+    return uuid;
   }
 
   private void playerLogin(final PlayerLoginEvent event) {
     if (event.getResult() == PlayerLoginEvent.Result.ALLOWED) {
       final Player player = event.getPlayer();
-      this.cache.putIfAbsent(player.getName().toLowerCase(Locale.ROOT), player.getUniqueId());
+      put(player.getName(), player.getUniqueId(), System.currentTimeMillis());
+    }
+  }
+
+  public int size() {
+    this.lock.readLock().lock();
+    try {
+      return this.size + this.otherNames.size();
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Describes how many names are cached, roughly how much memory they take and how many lookups found a player.
+   */
+  public String report() {
+    final int packedNames;
+    final int otherNames;
+    final long tableBytes;
+    this.lock.readLock().lock();
+    try {
+      packedNames = this.size;
+      otherNames = this.otherNames.size();
+      tableBytes = 5L * Long.BYTES * this.nameLow.length;
+    } finally {
+      this.lock.readLock().unlock();
+    }
+
+    final long lookups = this.lookups.sum();
+    final double hitRate = lookups == 0L ? 0.0 : 100.0 * this.hits.sum() / lookups;
+    return String.format(
+        Locale.ROOT,
+        "%d names (%d packed, %d other), ~%d KiB, %.1f%% hit rate over %d lookups%s",
+        packedNames + otherNames, packedNames, otherNames, tableBytes / 1024L, hitRate, lookups,
+        this.warmedUp ? "" : ", still warming up"
+    );
+  }
+
+  private UUID get(final String name) {
+    final long low = packChunk(name, 0);
+    final long high = packChunk(name, PACKED_CHUNK_LENGTH);
+    this.lock.readLock().lock();
+    try {
+      if (!isPackable(name, low, high)) {
+        final Entry entry = this.otherNames.get(name.toLowerCase(Locale.ROOT));
+        return entry == null ? null : entry.uuid;
+      }
+
+      final int slot = slot(this.nameLow, this.nameHigh, low, high);
+      return this.nameLow[slot] == 0L ? null : new UUID(this.uuidMost[slot], this.uuidLeast[slot]);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  private void put(final String name, final UUID uuid, final long seen) {
+    final long low = packChunk(name, 0);
+    final long high = packChunk(name, PACKED_CHUNK_LENGTH);
+    this.lock.writeLock().lock();
+    try {
+      if (!isPackable(name, low, high)) {
+        final Entry entry = this.otherNames.get(name.toLowerCase(Locale.ROOT));
+        if (entry == null || seen >= entry.lastSeen) {
+          this.otherNames.put(name.toLowerCase(Locale.ROOT), new Entry(uuid, seen));
+        }
+
+        return;
+      }
+
+      if (2 * (this.size + 1) > this.nameLow.length) {
+        grow();
+      }
+
+      final int slot = slot(this.nameLow, this.nameHigh, low, high);
+      if (this.nameLow[slot] == 0L) {
+        this.nameLow[slot] = low;
+        this.nameHigh[slot] = high;
+        ++this.size;
+      } else if (seen < this.lastSeen[slot]) {
+        // someone used this name more recently
+        return;
+      }
+
+      this.uuidMost[slot] = uuid.getMostSignificantBits();
+      this.uuidLeast[slot] = uuid.getLeastSignificantBits();
+      this.lastSeen[slot] = seen;
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  // guarded by the write lock
+  private void grow() {
+    final long[] oldNameLow = this.nameLow;
+    final long[] oldNameHigh = this.nameHigh;
+    final long[] oldUuidMost = this.uuidMost;
+    final long[] oldUuidLeast = this.uuidLeast;
+    final long[] oldLastSeen = this.lastSeen;
+
+    final int capacity = oldNameLow.length * 2;
+    this.nameLow = new long[capacity];
+    this.nameHigh = new long[capacity];
+    this.uuidMost = new long[capacity];
+    this.uuidLeast = new long[capacity];
+    this.lastSeen = new long[capacity];
+
+    for (int i = 0; i < oldNameLow.length; ++i) {
+      if (oldNameLow[i] != 0L) {
+        final int slot = slot(this.nameLow, this.nameHigh, oldNameLow[i], oldNameHigh[i]);
+        this.nameLow[slot] = oldNameLow[i];
+        this.nameHigh[slot] = oldNameHigh[i];
+        this.uuidMost[slot] = oldUuidMost[i];
+        this.uuidLeast[slot] = oldUuidLeast[i];
+        this.lastSeen[slot] = oldLastSeen[i];
+      }
+    }
+  }
+
+  /**
+   * Finds the slot holding the given packed name, or the empty slot where it would go.
+   */
+  private static int slot(final long[] nameLow, final long[] nameHigh, final long low, final long high) {
+    final int mask = nameLow.length - 1;
+    long hash = low * 0x9E3779B97F4A7C15L + high;
+    hash ^= hash >>> 31;
+    int slot = (int) hash & mask;
+    while (nameLow[slot] != 0L && (nameLow[slot] != low || nameHigh[slot] != high)) {
+      slot = (slot + 1) & mask;
+    }
+
+    return slot;
+  }
+
+  private static boolean isPackable(final String name, final long low, final long high) {
+    return !name.isEmpty() && name.length() <= MAX_PACKED_NAME_LENGTH && low != NOT_PACKABLE && high != NOT_PACKABLE;
+  }
+
+  /**
+   * Packs up to 8 characters of the name starting at {@code from} into a long ignoring case, or returns
+   * {@link #NOT_PACKABLE} if any of them is not a valid name character.
+   */
+  private static long packChunk(final String name, final int from) {
+    final int to = Math.min(name.length(), from + PACKED_CHUNK_LENGTH);
+    long packed = 0L;
+    for (int i = to - 1; i >= from; --i) {
+      final int digit = digit(name.charAt(i));
+      if (digit < 0) {
+        return NOT_PACKABLE;
+      }
+
+      packed = packed * RADIX + digit;
+    }
+
+    return packed;
+  }
+
+  private static int digit(final char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0' + 1;
+    } else if (c >= 'a' && c <= 'z') {
+      return c - 'a' + 11;
+    } else if (c >= 'A' && c <= 'Z') {
+      return c - 'A' + 11;
+    } else if (c == '_') {
+      return 37;
+    } else {
+      return -1;
+    }
+  }
+
+  private static final class Entry {
+
+    final UUID uuid;
+    final long lastSeen;
+
+    Entry(final UUID uuid, final long lastSeen) {
+      this.uuid = uuid;
+      this.lastSeen = lastSeen;
+    }
+  }
+
+  private final class WarmUp extends BukkitRunnable {
+
+    private final OfflinePlayer[] offlinePlayers;
+    private final long start = System.nanoTime();
+    private int next = 0;
+
+    WarmUp(final OfflinePlayer[] offlinePlayers) {
+      this.offlinePlayers = offlinePlayers;
+    }
+
+    @Override
+    public void run() {
+      final long deadline = System.nanoTime() + WARM_UP_NANOS_PER_TICK;
+      while (this.next < this.offlinePlayers.length) {
+        final OfflinePlayer offlinePlayer = this.offlinePlayers[this.next++];
+        final String name = offlinePlayer.getName();
+        if (name != null) {
+          put(name, offlinePlayer.getUniqueId(), offlinePlayer.getLastPlayed());
+        }
+
+        if (System.nanoTime() - deadline >= 0L) {
+          return;
+        }
+      }
+
+      cancel();
+      UniqueIdCache.this.warmedUp = true;
+      LOGGER.info("Indexed {} player names in {} ms", size(), (System.nanoTime() - this.start) / 1_000_000L);
     }
   }
 }
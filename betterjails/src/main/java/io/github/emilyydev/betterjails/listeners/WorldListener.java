@@ -0,0 +1,65 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.listeners;
+
+import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.api.impl.model.jail.ApiJail;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.PluginManager;
+
+public final class WorldListener implements Listener {
+
+  public static WorldListener create() {
+    return new WorldListener();
+  }
+
+  private WorldListener() {
+  }
+
+  public void register(final BetterJailsPlugin plugin) {
+    final PluginManager pluginManager = plugin.getServer().getPluginManager();
+    // jails cache the worlds their locations are in
+    pluginManager.registerEvent(
+        WorldLoadEvent.class, this, EventPriority.MONITOR,
+        (l, e) -> ApiJail.invalidateResolvedLocations(), plugin
+    );
+    pluginManager.registerEvent(
+        WorldUnloadEvent.class, this, EventPriority.MONITOR,
+        (l, e) -> worldUnload(plugin, (WorldUnloadEvent) e), plugin, true
+    );
+  }
+
+  private void worldUnload(final BetterJailsPlugin plugin, final WorldUnloadEvent event) {
+    // the event fires before the world is unloaded, locations resolved until then still point at it, so they're
+    // invalidated again once it's gone
+    ApiJail.invalidateResolvedLocations();
+    plugin.getServer().getScheduler().runTask(plugin, ApiJail::invalidateResolvedLocations);
+    // chunk tickets go away along with their world
+    plugin.jailData().forgetChunkTickets(event.getWorld());
+  }
+}
@@ -0,0 +1,99 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.util;
+
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Plugin chunk tickets keep chunks loaded without players around. They were added in 1.14, older servers just don't get
+ * to keep chunks loaded and {@link #supported()} is {@code false}.
+ */
+public final class ChunkTickets {
+
+  private static final MethodHandle ADD_PLUGIN_CHUNK_TICKET_MH;
+  private static final MethodHandle REMOVE_PLUGIN_CHUNK_TICKET_MH;
+
+  static {
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    final MethodType ticketType = MethodType.methodType(boolean.class, int.class, int.class, Plugin.class);
+    MethodHandle addPluginChunkTicketMh;
+    MethodHandle removePluginChunkTicketMh;
+    try {
+      addPluginChunkTicketMh = lookup.findVirtual(World.class, "addPluginChunkTicket", ticketType);
+      removePluginChunkTicketMh = lookup.findVirtual(World.class, "removePluginChunkTicket", ticketType);
+    } catch (final NoSuchMethodException ignored) {
+      addPluginChunkTicketMh = null;
+      removePluginChunkTicketMh = null;
+    } catch (final IllegalAccessException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+
+    ADD_PLUGIN_CHUNK_TICKET_MH = addPluginChunkTicketMh;
+    REMOVE_PLUGIN_CHUNK_TICKET_MH = removePluginChunkTicketMh;
+  }
+
+  public static boolean supported() {
+    return ADD_PLUGIN_CHUNK_TICKET_MH != null;
+  }
+
+  /**
+   * Adds a ticket for the given plugin on the chunk, loading it if needed. Does nothing if tickets aren't supported.
+   */
+  public static boolean add(final World world, final int chunkX, final int chunkZ, final Plugin plugin) {
+    if (ADD_PLUGIN_CHUNK_TICKET_MH == null) {
+      return false;
+    }
+
+    try {
+      return (boolean) ADD_PLUGIN_CHUNK_TICKET_MH.invokeExact(world, chunkX, chunkZ, plugin);
+    } catch (final RuntimeException | Error ex) {
+      throw ex;
+    } catch (final Throwable ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  public static boolean remove(final World world, final int chunkX, final int chunkZ, final Plugin plugin) {
+    if (REMOVE_PLUGIN_CHUNK_TICKET_MH == null) {
+      return false;
+    }
+
+    try {
+      return (boolean) REMOVE_PLUGIN_CHUNK_TICKET_MH.invokeExact(world, chunkX, chunkZ, plugin);
+    } catch (final RuntimeException | Error ex) {
+      throw ex;
+    } catch (final Throwable ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private ChunkTickets() {
+  }
+}
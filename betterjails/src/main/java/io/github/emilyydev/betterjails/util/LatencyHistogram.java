@@ -0,0 +1,101 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts latencies in power of two millisecond buckets, cheap enough to record every call and precise enough to tell
+ * what is slow.
+ */
+public final class LatencyHistogram {
+
+  // bucket 0 holds everything under 1ms, bucket i latencies in [2^(i-1), 2^i) ms and the last one everything above
+  private static final int BUCKETS = 14;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; ++i) {
+      this.buckets[i] = new LongAdder();
+    }
+  }
+
+  public void record(final long nanos) {
+    final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    final int bucket = millis == 0L ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+    this.buckets[bucket].increment();
+    this.totalNanos.add(nanos);
+    this.maxNanos.accumulate(nanos);
+  }
+
+  public long count() {
+    long count = 0L;
+    for (final LongAdder bucket : this.buckets) {
+      count += bucket.sum();
+    }
+
+    return count;
+  }
+
+  /**
+   * Upper bound in milliseconds of the bucket the given percentile falls in.
+   */
+  public long percentileUpperBound(final double percentile) {
+    final long[] counts = new long[BUCKETS];
+    long count = 0L;
+    for (int i = 0; i < BUCKETS; ++i) {
+      counts[i] = this.buckets[i].sum();
+      count += counts[i];
+    }
+
+    final long rank = (long) Math.ceil(count * percentile);
+    long seen = 0L;
+    for (int i = 0; i < BUCKETS - 1; ++i) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return 1L << i;
+      }
+    }
+
+    return TimeUnit.NANOSECONDS.toMillis(this.maxNanos.get());
+  }
+
+  public String report() {
+    final long count = count();
+    return String.format(
+        "%,d calls, %.2f ms average, p50 < %d ms, p99 < %d ms, max %.2f ms",
+        count,
+        count == 0L ? 0.0 : this.totalNanos.sum() / 1e6 / count,
+        percentileUpperBound(0.5),
+        percentileUpperBound(0.99),
+        this.maxNanos.get() / 1e6
+    );
+  }
+}
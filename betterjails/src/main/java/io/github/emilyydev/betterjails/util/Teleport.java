@@ -42,15 +42,20 @@ public final class Teleport {
   static {
     final MethodHandles.Lookup lookup = MethodHandles.lookup();
     MethodHandle teleportAsyncMh;
-    MethodHandle getChunkAtAsyncMh = null;
+    MethodHandle getChunkAtAsyncMh;
     try {
+      try {
+        getChunkAtAsyncMh = lookup.findVirtual(World.class, "getChunkAtAsync", MethodType.methodType(CompletableFuture.class, Location.class));
+      } catch (final NoSuchMethodException ignored) {
+        getChunkAtAsyncMh = null;
+      }
+
       try {
         teleportAsyncMh = lookup.findVirtual(Entity.class, "teleportAsync", MethodType.methodType(CompletableFuture.class, Location.class));
       } catch (final NoSuchMethodException ignored) {
-        try {
-          getChunkAtAsyncMh = lookup.findVirtual(World.class, "getChunkAtAsync", MethodType.methodType(CompletableFuture.class, Location.class));
+        if (getChunkAtAsyncMh != null) {
           teleportAsyncMh = lookup.findStatic(Teleport.class, "teleportAsyncOld", MethodType.methodType(CompletableFuture.class, Entity.class, Location.class));
-        } catch (final NoSuchMethodException ignored2) {
+        } else {
           teleportAsyncMh = lookup.findStatic(Teleport.class, "teleportSync", MethodType.methodType(CompletableFuture.class, Entity.class, Location.class));
         }
       }
@@ -73,6 +78,28 @@ public final class Teleport {
     }
   }
 
+  /**
+   * Starts loading the chunk at the given location in the background where the server supports it (Paper), so teleports
+   * or spawns there shortly after don't have to wait for it. Does nothing otherwise.
+   *
+   * @return a future completed with the chunk once it's loaded, or with {@code null} if chunks aren't preloaded
+   */
+  @SuppressWarnings("unchecked")
+  public static CompletableFuture<?> preloadChunk(final Location location) {
+    final World world = location.getWorld();
+    if (GET_CHUNK_AT_ASYNC_MH == null || world == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    try {
+      return (CompletableFuture<Chunk>) GET_CHUNK_AT_ASYNC_MH.invokeExact(world, location);
+    } catch (final RuntimeException | Error ex) {
+      throw ex;
+    } catch (final Throwable ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   private static CompletableFuture<Boolean> teleportAsyncOld(final Entity entity, final Location location) throws Throwable {
     final CompletableFuture<Chunk> cf = (CompletableFuture<Chunk>) GET_CHUNK_AT_ASYNC_MH.invokeExact(location.getWorld(), location);
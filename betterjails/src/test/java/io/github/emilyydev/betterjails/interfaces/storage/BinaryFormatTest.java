@@ -0,0 +1,254 @@
+//
+// This file is part of BetterJails, licensed under the MIT License.
+//
+// Copyright (c) 2024 emilyy-dev
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+//
+
+package io.github.emilyydev.betterjails.interfaces.storage;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import com.github.fefo.betterjails.api.model.jail.Jail;
+import com.github.fefo.betterjails.api.util.ImmutableLocation;
+import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.api.impl.model.jail.ApiJail;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.ApiPrisoner;
+import io.github.emilyydev.betterjails.api.impl.model.prisoner.SentenceExpiry;
+import io.github.emilyydev.betterjails.data.upgrade.DataUpgrader;
+import org.bukkit.World;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The binary encodings and the files built on them are read back by later versions, so they must round-trip exactly.
+ */
+public class BinaryFormatTest {
+
+  private static ServerMock server = null;
+  private static World world = null;
+  private static BetterJailsPlugin plugin = null;
+  private static Jail jail = null;
+
+  @BeforeAll
+  public static void prepare() throws IOException {
+    server = MockBukkit.mock();
+    world = server.addSimpleWorld("world");
+    try (final InputStream pluginDescriptorStream = BetterJailsPlugin.class.getResourceAsStream("/plugin.yml")) {
+      plugin = MockBukkit.loadWith(BetterJailsPlugin.class, Objects.requireNonNull(pluginDescriptorStream, "descriptor stream"), "do not enable bstats");
+    }
+
+    server.getScheduler().performOneTick();
+    plugin.jailData().addJail("binary", ImmutableLocation.at(world, 0.0, 64.0, 0.0)).join();
+    jail = plugin.jailData().getJail("binary");
+  }
+
+  @AfterAll
+  public static void teardown() {
+    server = null;
+    world = null;
+    plugin = null;
+    jail = null;
+    MockBukkit.unmock();
+  }
+
+  @Test
+  public void prisonerBlockRoundTrip() throws IOException {
+    final List<StoredPrisoner> prisoners = Arrays.asList(
+        new StoredPrisoner(
+            UUID.randomUUID(), "prisoner", "binary", "jailer", 3600L, 7200L, "reason ✓",
+            ImmutableLocation.at(world, 1.5, -60.0, 1e7, 90.0f, -45.0f), "default", Arrays.asList("default", "vip")
+        ),
+        // nulls, negative time and repeated strings
+        new StoredPrisoner(UUID.randomUUID(), null, "binary", null, -1L, 0L, null, null, null, Collections.emptyList())
+    );
+
+    final byte[] block = BinaryCodec.encodeStoredPrisoners(prisoners);
+    final List<StoredPrisoner> decoded = BinaryCodec.decodeStoredPrisoners(block);
+    assertEquals(prisoners.size(), decoded.size());
+    for (int i = 0; i < prisoners.size(); ++i) {
+      assertStoredPrisoner(prisoners.get(i), decoded.get(i));
+    }
+
+    assertEquals(prisoners.get(0).uuid, BinaryCodec.firstPrisonerUuid(block, 0, block.length));
+    assertEquals(prisoners.get(0).name, BinaryCodec.firstPrisonerName(block, 0, block.length));
+
+    // the first prisoner is found within a larger buffer too, as records are read out of journal files
+    final byte[] framed = new byte[block.length + 8];
+    System.arraycopy(block, 0, framed, 4, block.length);
+    assertEquals(prisoners.get(0).uuid, BinaryCodec.firstPrisonerUuid(framed, 4, block.length));
+  }
+
+  @Test
+  public void jailBlockRoundTrip() throws IOException {
+    final List<Jail> jails = Arrays.asList(
+        new ApiJail("first", ImmutableLocation.at(world, 0.0, 64.0, 0.0), ImmutableLocation.at(world, 10.0, 64.0, 10.0, 180.0f, 0.0f)),
+        new ApiJail("second", ImmutableLocation.at(world, -5.25, 0.0, 3.0), null)
+    );
+
+    final Map<String, Jail> decoded = BinaryCodec.decodeJails(BinaryCodec.encodeJails(jails));
+    assertEquals(jails.size(), decoded.size());
+    for (final Jail expected : jails) {
+      final Jail actual = Objects.requireNonNull(decoded.get(expected.name()), expected.name());
+      assertEquals(expected.location(), actual.location());
+      assertEquals(expected.releaseLocation(), actual.releaseLocation());
+    }
+  }
+
+  @Test
+  public void unsupportedDataVersions() {
+    final byte[] block = BinaryCodec.encodeStoredPrisoners(Collections.singletonList(
+        new StoredPrisoner(UUID.randomUUID(), "prisoner", "binary", null, 60L, 60L, null, null, null, Collections.emptyList())
+    ));
+
+    // kind, format version and data version are one byte each
+    assertEquals(DataUpgrader.PRISONER_VERSION, block[2]);
+    block[2] = (byte) (DataUpgrader.PRISONER_VERSION + 1);
+    assertThrows(IOException.class, () -> BinaryCodec.decodeStoredPrisoners(block));
+    block[2] = 1;
+    assertThrows(IOException.class, () -> BinaryCodec.decodeStoredPrisoners(block));
+    assertThrows(IOException.class, () -> BinaryCodec.decodeJails(block));
+  }
+
+  @Test
+  public void snapshotRoundTrip(final @TempDir Path dir) throws IOException {
+    final List<MappedSnapshot.Entry> entries = new ArrayList<>();
+    for (int i = 0; i < 100; ++i) {
+      final StoredPrisoner prisoner = new StoredPrisoner(UUID.randomUUID(), "prisoner" + i, "binary", null, i, 100L, null, null, null, Collections.emptyList());
+      final long timestamp = i % 2 == 0 ? MappedSnapshot.NOT_RUNNING : 1_700_000_000_000L + i;
+      entries.add(new MappedSnapshot.Entry(prisoner.uuid, prisoner.secondsLeft, timestamp, BinaryCodec.encodeStoredPrisoners(Collections.singletonList(prisoner))));
+    }
+
+    entries.sort(Comparator.comparing(entry -> entry.uuid));
+    final Path file = dir.resolve("prisoners.snapshot");
+    MappedSnapshot.write(file, entries);
+
+    final MappedSnapshot snapshot = MappedSnapshot.open(file);
+    assertEquals(entries.size(), snapshot.count());
+    for (final MappedSnapshot.Entry entry : entries) {
+      final int index = snapshot.find(entry.uuid);
+      assertTrue(index >= 0, "missing " + entry.uuid);
+      assertEquals(entry.uuid, snapshot.uuidAt(index));
+      assertEquals(entry.secondsLeft, snapshot.secondsLeftAt(index));
+      assertEquals(entry.timestamp, snapshot.timestampAt(index));
+      assertArrayEquals(entry.record, snapshot.recordAt(index));
+    }
+
+    assertTrue(snapshot.find(UUID.randomUUID()) < 0);
+
+    Files.write(file, new byte[] {0, 1, 2, 3}, StandardOpenOption.TRUNCATE_EXISTING);
+    assertThrows(IOException.class, () -> MappedSnapshot.open(file));
+  }
+
+  @Test
+  public void journalReplay() throws IOException {
+    final Path journalFile = plugin.getPluginDir().resolve("prisoners.journal");
+    final Path snapshotFile = plugin.getPluginDir().resolve("prisoners.snapshot");
+    Files.deleteIfExists(journalFile);
+    Files.deleteIfExists(snapshotFile);
+
+    final Map<UUID, ApiPrisoner> prisoners = new HashMap<>();
+    for (int i = 0; i < 600; ++i) {
+      final ApiPrisoner prisoner = prisoner("prisoner" + i);
+      prisoners.put(prisoner.uuid(), prisoner);
+    }
+
+    final ApiPrisoner deleted = prisoner("deleted");
+    final ApiPrisoner late = prisoner("late");
+    final JournalStorage storage = new JournalStorage(plugin);
+    try {
+      storage.loadPrisoners();
+      // compacted into the snapshot once the journal holds twice as many records as there are prisoners, what follows
+      // is only in the journal
+      for (int i = 0; i < 3; ++i) {
+        storage.savePrisoners(prisoners);
+      }
+
+      storage.savePrisoner(deleted);
+      storage.savePrisoner(late);
+      storage.deletePrisoner(deleted);
+    } finally {
+      storage.close();
+    }
+
+    prisoners.put(late.uuid(), late);
+    assertTrue(Files.exists(snapshotFile));
+
+    // a record torn mid-write must be discarded without losing the ones before it
+    Files.write(journalFile, new byte[] {0, 0, 0, 64, 1, 2, 3, 4, 5, 6}, StandardOpenOption.APPEND);
+
+    final JournalStorage reopened = new JournalStorage(plugin);
+    try {
+      final Map<UUID, ApiPrisoner> loaded = reopened.loadPrisoners();
+      assertEquals(prisoners.keySet(), loaded.keySet());
+      for (final ApiPrisoner expected : prisoners.values()) {
+        assertStoredPrisoner(StoredPrisoner.of(expected), StoredPrisoner.of(loaded.get(expected.uuid())));
+      }
+    } finally {
+      reopened.close();
+      Files.deleteIfExists(journalFile);
+      Files.deleteIfExists(snapshotFile);
+    }
+  }
+
+  private static ApiPrisoner prisoner(final String name) {
+    final Duration sentence = Duration.ofHours(1L);
+    return new ApiPrisoner(
+        UUID.randomUUID(), name, "default", Collections.singletonList("default"), jail, "jailer",
+        SentenceExpiry.of(sentence), sentence, "reason", jail.location(), false
+    );
+  }
+
+  private static void assertStoredPrisoner(final StoredPrisoner expected, final StoredPrisoner actual) {
+    assertEquals(expected.uuid, actual.uuid);
+    assertEquals(expected.name, actual.name);
+    assertEquals(expected.jailName, actual.jailName);
+    assertEquals(expected.jailedBy, actual.jailedBy);
+    assertEquals(expected.secondsLeft, actual.secondsLeft);
+    assertEquals(expected.totalSentenceSeconds, actual.totalSentenceSeconds);
+    assertEquals(expected.reason, actual.reason);
+    assertEquals(expected.lastLocation, actual.lastLocation);
+    assertEquals(expected.primaryGroup, actual.primaryGroup);
+    assertEquals(expected.parentGroups, actual.parentGroups);
+  }
+}
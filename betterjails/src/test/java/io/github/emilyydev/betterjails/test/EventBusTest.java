@@ -27,12 +27,18 @@ package io.github.emilyydev.betterjails.test;
 import be.seeseemelk.mockbukkit.MockBukkit;
 import be.seeseemelk.mockbukkit.ServerMock;
 import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import com.github.fefo.betterjails.api.event.BetterJailsEvent;
+import com.github.fefo.betterjails.api.event.EventDelivery;
+import com.github.fefo.betterjails.api.event.EventSubscription;
 import com.github.fefo.betterjails.api.event.jail.JailCreateEvent;
+import com.github.fefo.betterjails.api.event.jail.JailDeleteEvent;
+import com.github.fefo.betterjails.api.event.plugin.PluginSaveDataEvent;
 import com.github.fefo.betterjails.api.event.prisoner.PlayerImprisonEvent;
 import com.github.fefo.betterjails.api.event.prisoner.PrisonerReleaseEvent;
 import com.github.fefo.betterjails.api.model.jail.Jail;
 import com.github.fefo.betterjails.api.util.ImmutableLocation;
 import io.github.emilyydev.betterjails.BetterJailsPlugin;
+import io.github.emilyydev.betterjails.api.impl.event.ApiEventBus;
 import io.github.emilyydev.betterjails.util.Util;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -43,9 +49,14 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class EventBusTest {
 
@@ -100,4 +111,106 @@ public class EventBusTest {
     assertDoesNotThrow(() -> plugin.prisonerData().addJailedPlayer(player, jail, Util.NIL_UUID, "test", Duration.ofHours(1L), null, false));
     assertDoesNotThrow(() -> plugin.prisonerData().releaseJailedPlayer(player, Util.NIL_UUID, "test", false));
   }
+
+  @Test
+  public void supertypeSubscription() {
+    final ApiEventBus eventBus = plugin.eventBus();
+    final List<BetterJailsEvent> received = new ArrayList<>();
+    final List<JailDeleteEvent> deletes = new ArrayList<>();
+    final EventSubscription<BetterJailsEvent> all = eventBus.subscribe(plugin, BetterJailsEvent.class, received::add);
+    final EventSubscription<JailDeleteEvent> deleteOnly = eventBus.subscribe(plugin, JailDeleteEvent.class, deletes::add);
+    try {
+      eventBus.post(JailCreateEvent.class, "supertype", location());
+      eventBus.post(PluginSaveDataEvent.class);
+
+      assertEquals(2, received.size());
+      assertTrue(received.get(0) instanceof JailCreateEvent);
+      assertTrue(received.get(1) instanceof PluginSaveDataEvent);
+      assertTrue(deletes.isEmpty());
+    } finally {
+      eventBus.unsubscribe(all);
+      eventBus.unsubscribe(deleteOnly);
+    }
+  }
+
+  @Test
+  public void unsubscribeDuringPost() {
+    final ApiEventBus eventBus = plugin.eventBus();
+    final List<String> calls = new ArrayList<>();
+    final List<EventSubscription<JailCreateEvent>> second = new ArrayList<>(1);
+    final EventSubscription<JailCreateEvent> first = eventBus.subscribe(plugin, JailCreateEvent.class, event -> {
+      calls.add("first");
+      second.forEach(eventBus::unsubscribe);
+    });
+    second.add(eventBus.subscribe(plugin, JailCreateEvent.class, event -> calls.add("second")));
+    try {
+      assertDoesNotThrow(() -> eventBus.post(JailCreateEvent.class, "unsubscribe0", location()));
+      assertDoesNotThrow(() -> eventBus.post(JailCreateEvent.class, "unsubscribe1", location()));
+
+      assertEquals(List.of("first", "first"), calls);
+      assertFalse(second.get(0).isActive());
+    } finally {
+      eventBus.unsubscribe(first);
+    }
+  }
+
+  @Test
+  public void queuedDeliveryKeepsOrder() {
+    final ApiEventBus eventBus = plugin.eventBus();
+    final List<String> received = new ArrayList<>();
+    final EventSubscription<JailCreateEvent> subscription =
+        eventBus.subscribe(plugin, JailCreateEvent.class, EventDelivery.MAIN_THREAD, event -> received.add(event.jailName()));
+    try {
+      final List<String> posted = new ArrayList<>();
+      for (int i = 0; i < 200; ++i) {
+        posted.add("order" + i);
+        eventBus.post(JailCreateEvent.class, "order" + i, location());
+      }
+
+      assertTrue(received.isEmpty());
+      tick(16);
+      assertEquals(posted, received);
+    } finally {
+      eventBus.unsubscribe(subscription);
+    }
+  }
+
+  @Test
+  public void queuedDeliveryDropsNewestOnOverflow() {
+    final ApiEventBus eventBus = plugin.eventBus();
+    final List<String> received = new ArrayList<>();
+    final EventSubscription<JailCreateEvent> subscription =
+        eventBus.subscribe(plugin, JailCreateEvent.class, EventDelivery.MAIN_THREAD, event -> received.add(event.jailName()));
+    try {
+      // more than the queue can hold before the main thread gets to it
+      final int postedCount = 4096;
+      for (int i = 0; i < postedCount; ++i) {
+        eventBus.post(JailCreateEvent.class, "overflow" + i, location());
+      }
+
+      tick(128);
+      assertFalse(received.isEmpty());
+      assertTrue(received.size() < postedCount);
+      for (int i = 0; i < received.size(); ++i) {
+        assertEquals("overflow" + i, received.get(i));
+      }
+
+      // the queue recovers once drained
+      eventBus.post(JailCreateEvent.class, "afterOverflow", location());
+      tick(1);
+      assertEquals("afterOverflow", received.get(received.size() - 1));
+    } finally {
+      eventBus.unsubscribe(subscription);
+    }
+  }
+
+  private static ImmutableLocation location() {
+    return ImmutableLocation.at(Objects.requireNonNull(server.getWorld("world")), 0, 0, 0);
+  }
+
+  private static void tick(final int ticks) {
+    for (int i = 0; i < ticks; ++i) {
+      server.getScheduler().performOneTick();
+    }
+  }
 }
@@ -9,3 +9,5 @@ includeBuild("build-logic")
 include(":betterjails-api")
 project(":betterjails-api").projectDir = file("api")
 include(":betterjails")
+include(":betterjails-benchmarks")
+project(":betterjails-benchmarks").projectDir = file("benchmarks")